@@ -1,11 +1,34 @@
 package com.serpenssolida.discordbot;
 
+import com.serpenssolida.discordbot.command.CommandSyncSettings;
+import com.serpenssolida.discordbot.module.ModuleLaneSettings;
+import com.serpenssolida.discordbot.module.logger.EventLogSettings;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class BotData
 {
 	private String token;
 	private String owner;
 	private int apiPort;
 	private String apiPassword;
+	private String commandMode = "guild"; //"guild" to register every command in every guild, "hybrid" to register the commands with default prefixes globally.
+	private String eventExecutor = "default"; //"default" to handle events on the JDA thread, "virtual" to handle them on per-guild lanes.
+	private Map<String, ModuleLaneSettings> moduleLanes = new HashMap<>(); //Execution lanes of the modules by internal id, "default" applies to every other module.
+	private long modalTimeToLive = 900000; //Milliseconds after which a modal that was not submitted is forgotten.
+	private int modalsPerGuild = 1000; //Maximum number of pending modals of a module in a guild.
+	private String settingsStorage = "json"; //"json" to store the settings in a file for every guild, "log" to store them in a single file.
+	private boolean preloadSettings = false; //Whether the settings of every guild are loaded when the bot starts.
+	private int preloadThreads = 4; //Number of threads that load the settings when the bot starts.
+	private long settingsFlushDelay = 1000; //Milliseconds the changed guild settings wait before being written to disk.
+	private CommandSyncSettings commandSync = new CommandSyncSettings(); //Limits of the bulk command synchronization.
+	private ShardSettings sharding = new ShardSettings(); //Shards of the gateway connection run by this process.
+	private String chunking = "all"; //"all" to load every member at login, "lazy" to load the members when they are used, "modules" to load them only if a module needs every member.
+	private List<String> memberCache = List.of("all"); //Members kept in the cache, names of MemberCache values or "modules" for the members needed by the modules.
+	private List<String> intents = List.of("default", "modules"); //Gateway intents enabled at login, names of GatewayIntent values, "default" for the JDA default intents or "modules" for the intents needed by the modules.
+	private EventLogSettings eventLog = new EventLogSettings(); //Limits of the queue of the events logged by the logger module.
 	
 	public String getToken()
 	{
@@ -26,4 +49,87 @@ public class BotData
 	{
 		return this.apiPassword;
 	}
+	
+	public String getCommandMode()
+	{
+		return this.commandMode;
+	}
+	
+	/**
+	 * @return True if the commands with default prefixes are registered globally.
+	 */
+	public boolean isHybridCommandMode()
+	{
+		return "hybrid".equalsIgnoreCase(this.commandMode);
+	}
+	
+	public String getEventExecutor()
+	{
+		return this.eventExecutor;
+	}
+	
+	public Map<String, ModuleLaneSettings> getModuleLanes()
+	{
+		return this.moduleLanes;
+	}
+	
+	public long getModalTimeToLive()
+	{
+		return this.modalTimeToLive;
+	}
+	
+	public int getModalsPerGuild()
+	{
+		return this.modalsPerGuild;
+	}
+	
+	public String getSettingsStorage()
+	{
+		return this.settingsStorage;
+	}
+	
+	public boolean isPreloadSettings()
+	{
+		return this.preloadSettings;
+	}
+	
+	public int getPreloadThreads()
+	{
+		return this.preloadThreads;
+	}
+	
+	public long getSettingsFlushDelay()
+	{
+		return this.settingsFlushDelay;
+	}
+	
+	public CommandSyncSettings getCommandSync()
+	{
+		return this.commandSync;
+	}
+	
+	public ShardSettings getSharding()
+	{
+		return this.sharding;
+	}
+	
+	public String getChunking()
+	{
+		return this.chunking;
+	}
+	
+	public List<String> getMemberCache()
+	{
+		return this.memberCache;
+	}
+	
+	public List<String> getIntents()
+	{
+		return this.intents;
+	}
+	
+	public EventLogSettings getEventLog()
+	{
+		return this.eventLog;
+	}
 }
@@ -0,0 +1,191 @@
+package com.serpenssolida.discordbot;
+
+import com.serpenssolida.discordbot.module.BotListener;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Configuration of the gateway connection, computed before login from "bot.json" and from the needs declared by the
+ * registered modules.
+ *
+ * <p>The connection starts with no intent and no cache: only the intents and the cache flags selected in "bot.json",
+ * declared by the modules or needed by the member cache are enabled, so the bot does not receive events that no module
+ * handles.</p>
+ */
+final class GatewaySettings
+{
+	private final EnumSet<GatewayIntent> intents = EnumSet.noneOf(GatewayIntent.class);
+	private final EnumSet<CacheFlag> cacheFlags = EnumSet.noneOf(CacheFlag.class);
+	private final EnumSet<MemberCache> memberCache = EnumSet.noneOf(MemberCache.class);
+	private ChunkingFilter chunkingFilter = ChunkingFilter.ALL;
+	
+	private static final Set<CacheFlag> PRESENCE_CACHE_FLAGS = EnumSet.of(CacheFlag.ACTIVITY, CacheFlag.CLIENT_STATUS, CacheFlag.ONLINE_STATUS);
+	private static final Logger logger = LoggerFactory.getLogger(GatewaySettings.class);
+	
+	private GatewaySettings() {}
+	
+	/**
+	 * Compute the configuration of the connection.
+	 *
+	 * @param data
+	 * 		The bot data.
+	 * @param modules
+	 * 		The registered modules.
+	 *
+	 * @return
+	 * 		The configuration of the connection.
+	 */
+	static GatewaySettings create(BotData data, List<BotListener> modules)
+	{
+		GatewaySettings settings = new GatewaySettings();
+		boolean defaultIntents = false;
+		
+		settings.addMemberCache(data, modules);
+		settings.setChunkingFilter(data, modules);
+		
+		//Intents and cache flags selected in "bot.json".
+		for (String name : data.getIntents())
+		{
+			if ("default".equalsIgnoreCase(name))
+			{
+				settings.intents.addAll(GatewayIntent.getIntents(GatewayIntent.DEFAULT));
+				defaultIntents = true;
+			}
+			else if ("modules".equalsIgnoreCase(name))
+			{
+				for (BotListener module : modules)
+				{
+					settings.intents.addAll(module.getIntents());
+					settings.cacheFlags.addAll(module.getCacheFlags());
+				}
+			}
+			else
+			{
+				try
+				{
+					settings.intents.add(GatewayIntent.valueOf(name.toUpperCase(Locale.ROOT)));
+				}
+				catch (IllegalArgumentException e)
+				{
+					logger.warn(SerpensBot.getMessage("gateway_intent_unknown", name));
+				}
+			}
+		}
+		
+		//Intents and cache flags needed to keep the members up to date.
+		for (MemberCache member : settings.memberCache)
+		{
+			if (member.getIntent() != null)
+				settings.intents.add(member.getIntent());
+			
+			if (member.getCacheFlag() != null)
+				settings.cacheFlags.add(member.getCacheFlag());
+		}
+		
+		//Chunking needs the members intent.
+		if (settings.chunkingFilter != ChunkingFilter.NONE)
+			settings.intents.add(GatewayIntent.GUILD_MEMBERS);
+		
+		for (CacheFlag cacheFlag : settings.cacheFlags)
+		{
+			if (cacheFlag.getRequiredIntent() != null)
+				settings.intents.add(cacheFlag.getRequiredIntent());
+		}
+		
+		//The default intents keep the caches that JDA enables by default.
+		if (defaultIntents)
+		{
+			for (CacheFlag cacheFlag : CacheFlag.values())
+			{
+				if (!PRESENCE_CACHE_FLAGS.contains(cacheFlag) && (cacheFlag.getRequiredIntent() == null || settings.intents.contains(cacheFlag.getRequiredIntent())))
+					settings.cacheFlags.add(cacheFlag);
+			}
+		}
+		
+		logger.info(SerpensBot.getMessage("member_cache_selected", settings.memberCache.isEmpty() ? "none" : settings.memberCache, data.getChunking()));
+		logger.info(SerpensBot.getMessage("gateway_intents_selected", settings.intents, settings.cacheFlags));
+		
+		return settings;
+	}
+	
+	/**
+	 * Add the members to cache selected in the bot data. The "modules" entry selects the members needed by the
+	 * registered modules.
+	 */
+	private void addMemberCache(BotData data, List<BotListener> modules)
+	{
+		for (String name : data.getMemberCache())
+		{
+			if ("modules".equalsIgnoreCase(name))
+			{
+				for (BotListener module : modules)
+					this.memberCache.addAll(module.getMemberCache());
+				
+				continue;
+			}
+			
+			try
+			{
+				this.memberCache.add(MemberCache.valueOf(name.toUpperCase(Locale.ROOT)));
+			}
+			catch (IllegalArgumentException e)
+			{
+				logger.warn(SerpensBot.getMessage("member_cache_unknown", name));
+			}
+		}
+	}
+	
+	/**
+	 * Set the chunking filter selected in the bot data. With "modules" every member is loaded at login only if a module
+	 * needs every member in the cache.
+	 */
+	private void setChunkingFilter(BotData data, List<BotListener> modules)
+	{
+		if ("lazy".equalsIgnoreCase(data.getChunking()))
+		{
+			this.chunkingFilter = ChunkingFilter.NONE;
+		}
+		else if ("modules".equalsIgnoreCase(data.getChunking()))
+		{
+			this.chunkingFilter = ChunkingFilter.NONE;
+			
+			for (BotListener module : modules)
+			{
+				if (module.getMemberCache().contains(MemberCache.ALL))
+					this.chunkingFilter = ChunkingFilter.ALL;
+			}
+		}
+	}
+	
+	/**
+	 * @return The intents enabled at login.
+	 */
+	Set<GatewayIntent> getIntents()
+	{
+		return this.intents;
+	}
+	
+	/**
+	 * @return The cache flags enabled at login.
+	 */
+	Set<CacheFlag> getCacheFlags()
+	{
+		return this.cacheFlags;
+	}
+	
+	MemberCachePolicy getMemberCachePolicy()
+	{
+		return MemberCache.toPolicy(this.memberCache);
+	}
+	
+	ChunkingFilter getChunkingFilter()
+	{
+		return this.chunkingFilter;
+	}
+}
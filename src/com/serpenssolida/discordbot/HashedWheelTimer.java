@@ -0,0 +1,178 @@
+package com.serpenssolida.discordbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer optimized for large numbers of timeouts that are usually cancelled before expiring.
+ *
+ * <p>The timeouts are hashed into a wheel of buckets, one bucket for every tick. A single daemon thread advances the
+ * wheel once per tick and expires the timeouts of the current bucket, so scheduling and cancelling a timeout cost O(1)
+ * regardless of how many timeouts are pending. The precision of the timer is the duration of a tick.</p>
+ */
+public class HashedWheelTimer
+{
+	private final long tickNanos;
+	private final Queue<Timeout>[] wheel;
+	private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+	private final long startTime;
+	private long tick = 0; //Ticks elapsed since the start, accessed only by the worker thread.
+	
+	private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+	
+	/**
+	 * A task scheduled on the timer.
+	 */
+	public static final class Timeout
+	{
+		private final Runnable task;
+		private final long deadlineTick;
+		private volatile boolean cancelled = false;
+		
+		private Timeout(Runnable task, long deadlineTick)
+		{
+			this.task = task;
+			this.deadlineTick = deadlineTick;
+		}
+		
+		/**
+		 * Prevent the task from running. The timeout is removed from the wheel when its bucket is reached.
+		 */
+		public void cancel()
+		{
+			this.cancelled = true;
+		}
+		
+		public boolean isCancelled()
+		{
+			return this.cancelled;
+		}
+	}
+	
+	/**
+	 * @param tickDuration
+	 * 		Duration of a tick.
+	 * @param unit
+	 * 		Unit of the duration.
+	 * @param wheelSize
+	 * 		Number of buckets of the wheel, timeouts further than {@code wheelSize} ticks stay in their bucket for more rounds.
+	 */
+	@SuppressWarnings("unchecked")
+	public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize)
+	{
+		this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+		this.wheel = new Queue[wheelSize];
+		this.startTime = System.nanoTime();
+		
+		for (int i = 0; i < wheelSize; i++)
+			this.wheel[i] = new ArrayDeque<>();
+		
+		Thread worker = new Thread(this::run, "SerpensBot-Timer");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
+	/**
+	 * Schedule the given task.
+	 *
+	 * @param task
+	 * 		The task to run when the timeout expires. It runs on the timer thread, so it must be short.
+	 * @param delay
+	 * 		The delay after which the task will run.
+	 * @param unit
+	 * 		The unit of the delay.
+	 *
+	 * @return
+	 * 		The timeout, used to cancel the task.
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit)
+	{
+		long elapsedNanos = System.nanoTime() - this.startTime + unit.toNanos(delay);
+		
+		//Round up so the task never runs before the delay has passed.
+		Timeout timeout = new Timeout(task, (elapsedNanos + this.tickNanos - 1) / this.tickNanos);
+		this.pendingTimeouts.add(timeout);
+		
+		return timeout;
+	}
+	
+	private void run()
+	{
+		while (true)
+		{
+			//Wait for the next tick.
+			long sleepNanos = (this.tick + 1) * this.tickNanos - (System.nanoTime() - this.startTime);
+			
+			if (sleepNanos > 0)
+			{
+				try
+				{
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+				
+				continue;
+			}
+			
+			this.tick++;
+			this.transferPendingTimeouts();
+			this.expireTimeouts(this.wheel[(int) (this.tick % this.wheel.length)]);
+		}
+	}
+	
+	/**
+	 * Move the newly scheduled timeouts into their bucket.
+	 */
+	private void transferPendingTimeouts()
+	{
+		Timeout timeout;
+		
+		while ((timeout = this.pendingTimeouts.poll()) != null)
+		{
+			if (timeout.isCancelled())
+				continue;
+			
+			//Timeouts already due go into the current bucket.
+			long deadlineTick = Math.max(timeout.deadlineTick, this.tick);
+			this.wheel[(int) (deadlineTick % this.wheel.length)].add(timeout);
+		}
+	}
+	
+	private void expireTimeouts(Queue<Timeout> bucket)
+	{
+		Iterator<Timeout> iterator = bucket.iterator();
+		
+		while (iterator.hasNext())
+		{
+			Timeout timeout = iterator.next();
+			
+			if (timeout.isCancelled())
+			{
+				iterator.remove();
+			}
+			else if (timeout.deadlineTick <= this.tick)
+			{
+				iterator.remove();
+				
+				try
+				{
+					timeout.task.run();
+				}
+				catch (Throwable e)
+				{
+					logger.error(e.getLocalizedMessage(), e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.serpenssolida.discordbot;
+
+import com.serpenssolida.discordbot.module.BotListener;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
+
+import java.util.Collection;
+
+/**
+ * Members that the bot can keep in its cache. The modules declare the members they need with
+ * {@link BotListener#addMemberCache(MemberCache...)}, the "memberCache" list of "bot.json" selects the ones that are
+ * actually cached.
+ */
+public enum MemberCache
+{
+	ALL(MemberCachePolicy.ALL, GatewayIntent.GUILD_MEMBERS, null), //Every member of every guild.
+	ONLINE(MemberCachePolicy.ONLINE, GatewayIntent.GUILD_PRESENCES, CacheFlag.ONLINE_STATUS), //Members that are not offline.
+	VOICE(MemberCachePolicy.VOICE, GatewayIntent.GUILD_VOICE_STATES, CacheFlag.VOICE_STATE), //Members connected to a voice channel.
+	OWNER(MemberCachePolicy.OWNER, null, null), //Owners of the guilds.
+	PENDING(MemberCachePolicy.PENDING, GatewayIntent.GUILD_MEMBERS, null), //Members that did not pass the membership screening.
+	BOOSTER(MemberCachePolicy.BOOSTER, GatewayIntent.GUILD_MEMBERS, null); //Members that are boosting a guild.
+	
+	private final MemberCachePolicy policy;
+	private final GatewayIntent intent;
+	private final CacheFlag cacheFlag;
+	
+	MemberCache(MemberCachePolicy policy, GatewayIntent intent, CacheFlag cacheFlag)
+	{
+		this.policy = policy;
+		this.intent = intent;
+		this.cacheFlag = cacheFlag;
+	}
+	
+	public MemberCachePolicy getPolicy()
+	{
+		return this.policy;
+	}
+	
+	/**
+	 * @return The intent needed to keep these members up to date, or null if no intent is needed.
+	 */
+	public GatewayIntent getIntent()
+	{
+		return this.intent;
+	}
+	
+	/**
+	 * @return The cache flag needed to keep these members up to date, or null if no flag is needed.
+	 */
+	public CacheFlag getCacheFlag()
+	{
+		return this.cacheFlag;
+	}
+	
+	/**
+	 * Combine the policies of the given members.
+	 *
+	 * @param memberCache
+	 * 		The members to cache.
+	 *
+	 * @return
+	 * 		A policy that caches a member if any of the given policies caches it, {@link MemberCachePolicy#NONE} if no
+	 * 		member is given.
+	 */
+	public static MemberCachePolicy toPolicy(Collection<MemberCache> memberCache)
+	{
+		if (memberCache.contains(MemberCache.ALL))
+			return MemberCachePolicy.ALL;
+		
+		MemberCachePolicy policy = MemberCachePolicy.NONE;
+		
+		for (MemberCache member : memberCache)
+			policy = policy == MemberCachePolicy.NONE ? member.getPolicy() : policy.or(member.getPolicy());
+		
+		return policy;
+	}
+}
@@ -0,0 +1,37 @@
+package com.serpenssolida.discordbot;
+
+import java.util.HashMap;
+import java.util.ResourceBundle;
+
+/**
+ * The messages of a {@link ResourceBundle} compiled into {@link MessageTemplate}s.
+ *
+ * <p>Every key of the bundle is mapped to its compiled template, so a message costs a single hash lookup and no
+ * parsing. The messages are requested by key, so an array indexed table would still need the same hash lookup to find
+ * the index of the key; the bundle instead needs two lookups ({@code containsKey} and {@code getString}) through its
+ * parent chain.</p>
+ */
+public final class MessageTable
+{
+	private final HashMap<String, MessageTemplate> templates = new HashMap<>();
+	
+	public MessageTable(ResourceBundle bundle)
+	{
+		for (String key : bundle.keySet())
+			this.templates.put(key, MessageTemplate.compile(bundle.getString(key)));
+	}
+	
+	/**
+	 * Get the template of the message with the given key.
+	 *
+	 * @param key
+	 * 		The key of the message.
+	 *
+	 * @return
+	 * 		The template of the message, or null if the key is not in the table.
+	 */
+	public MessageTemplate get(String key)
+	{
+		return this.templates.get(key);
+	}
+}
@@ -0,0 +1,152 @@
+package com.serpenssolida.discordbot;
+
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Locale;
+
+/**
+ * A message of the language file parsed once into literal parts and placeholders.
+ *
+ * <p>Only the placeholders used by the language file ({@code %s}, {@code %b}, {@code %d}, {@code %n} and {@code %%})
+ * are handled by the template, any other format (flags, width, precision, indexes...) makes the template fall back to
+ * {@link String#format(String, Object...)} so the result is always the same.</p>
+ */
+public final class MessageTemplate
+{
+	private final String pattern; //The raw message.
+	private final String[] literals; //Literal parts, literals[i] comes before placeholders[i].
+	private final char[] placeholders; //Conversion of every placeholder that consumes an argument.
+	private final boolean simple; //False if the pattern contains formats not handled by the template.
+	private final int literalLength; //Total length of the literal parts, used to size the builder.
+	
+	private static final boolean ASCII_DIGITS = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getZeroDigit() == '0';
+	
+	private MessageTemplate(String pattern, String[] literals, char[] placeholders, boolean simple)
+	{
+		int literalLength = 0;
+		
+		for (String literal : literals)
+			literalLength += literal.length();
+		
+		this.pattern = pattern;
+		this.literals = literals;
+		this.placeholders = placeholders;
+		this.simple = simple;
+		this.literalLength = literalLength;
+	}
+	
+	/**
+	 * Parse the given message.
+	 *
+	 * @param pattern
+	 * 		The message in the format used by {@link String#format(String, Object...)}.
+	 *
+	 * @return
+	 * 		The compiled template.
+	 */
+	public static MessageTemplate compile(String pattern)
+	{
+		ArrayList<String> literals = new ArrayList<>();
+		StringBuilder placeholders = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		
+		for (int i = 0; i < pattern.length(); i++)
+		{
+			char c = pattern.charAt(i);
+			
+			if (c != '%')
+			{
+				literal.append(c);
+				continue;
+			}
+			
+			char conversion = i + 1 < pattern.length() ? pattern.charAt(++i) : '\0';
+			
+			switch (conversion)
+			{
+				case '%' -> literal.append('%');
+				case 'n' -> literal.append(System.lineSeparator());
+				case 's', 'b' ->
+				{
+					literals.add(literal.toString());
+					placeholders.append(conversion);
+					literal.setLength(0);
+				}
+				case 'd' ->
+				{
+					//Localized digits are left to String.format.
+					if (!ASCII_DIGITS)
+						return new MessageTemplate(pattern, new String[0], new char[0], false);
+					
+					literals.add(literal.toString());
+					placeholders.append(conversion);
+					literal.setLength(0);
+				}
+				default ->
+				{
+					return new MessageTemplate(pattern, new String[0], new char[0], false);
+				}
+			}
+		}
+		
+		literals.add(literal.toString());
+		
+		return new MessageTemplate(pattern, literals.toArray(new String[0]), placeholders.toString().toCharArray(), true);
+	}
+	
+	/**
+	 * Format the template with the given arguments, the result is the same of
+	 * {@code String.format(pattern, args)}.
+	 *
+	 * @param args
+	 * 		The arguments of the placeholders.
+	 *
+	 * @return
+	 * 		The formatted message.
+	 */
+	public String format(Object... args)
+	{
+		//Let String.format handle the cases not covered by the template, including its exceptions.
+		if (!this.simple || args == null || args.length < this.placeholders.length)
+			return String.format(this.pattern, args);
+		
+		StringBuilder builder = new StringBuilder(this.literalLength + this.placeholders.length * 16);
+		
+		for (int i = 0; i < this.placeholders.length; i++)
+		{
+			Object arg = args[i];
+			builder.append(this.literals[i]);
+			
+			switch (this.placeholders[i])
+			{
+				case 's' ->
+				{
+					if (arg instanceof Formattable)
+						return String.format(this.pattern, args);
+					
+					builder.append(arg);
+				}
+				case 'b' -> builder.append(arg == null ? "false" : arg instanceof Boolean ? arg.toString() : "true");
+				default ->
+				{
+					if (!(arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte))
+						return String.format(this.pattern, args);
+					
+					builder.append(arg);
+				}
+			}
+		}
+		
+		builder.append(this.literals[this.placeholders.length]);
+		return builder.toString();
+	}
+	
+	/**
+	 * @return The raw message.
+	 */
+	public String getPattern()
+	{
+		return this.pattern;
+	}
+}
@@ -2,44 +2,97 @@ package com.serpenssolida.discordbot;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.serpenssolida.discordbot.command.CommandDispatcher;
+import com.serpenssolida.discordbot.command.CommandSyncScheduler;
+import com.serpenssolida.discordbot.event.GuildLaneExecutor;
+import com.serpenssolida.discordbot.event.GuildOrderedEventManager;
+import com.serpenssolida.discordbot.event.ModuleEventManager;
 import com.serpenssolida.discordbot.module.BotListener;
+import com.serpenssolida.discordbot.module.GuildState;
+import com.serpenssolida.discordbot.module.GuildStateStore;
+import com.serpenssolida.discordbot.module.ModuleLane;
+import com.serpenssolida.discordbot.module.ModuleLaneSettings;
+import com.serpenssolida.discordbot.module.ModuleRegistry;
 import com.serpenssolida.discordbot.module.base.BaseListener;
 import com.serpenssolida.discordbot.module.logger.LoggerListener;
 import com.serpenssolida.discordbot.module.settings.SettingsData;
 import com.serpenssolida.discordbot.module.settings.SettingsListener;
+import com.serpenssolida.discordbot.storage.JsonSettingsStorage;
+import com.serpenssolida.discordbot.storage.LogSettingsStorage;
+import com.serpenssolida.discordbot.storage.SettingsStorage;
 import com.serpenssolida.discordbot.webserver.SerpensBotWebServer;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.requests.GatewayIntent;
-import net.dv8tion.jda.api.requests.restaction.CommandListUpdateAction;
-import net.dv8tion.jda.api.utils.ChunkingFilter;
-import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SerpensBot
 {
+	public static final String SERVER_DATA_FOLDER = "server_data";
 	public static final String SETTINGS_FOLDER = "settings";
+	private static final String HYBRID_COMMANDS_FILE = "hybrid_commands"; //Present while the global commands are registered by the "hybrid" mode.
 	public static final ResourceBundle defaultLanguage = ResourceBundle.getBundle("SerpensBot");
+	private static final MessageTable defaultMessages = new MessageTable(SerpensBot.defaultLanguage);
 	
-	private static JDA api;
+	private static volatile JDA api;
+	private static volatile ShardManager shardManager;
+	private static volatile GatewaySettings gatewaySettings; //Configuration of the current connection.
 	private static SerpensBotInitCallback initCallback;
 	private static ResourceBundle language;
+	private static MessageTable messages = SerpensBot.defaultMessages;
 	private static String ownerId;
+	private static volatile BotData botData;
+	private static volatile SettingsStorage settingsStorage;
 	
+	private static final CommandDispatcher commandDispatcher = new CommandDispatcher();
+	private static final CommandSyncScheduler commandSyncScheduler = new CommandSyncScheduler();
+	private static final SettingsPersister settingsPersister = new SettingsPersister();
+	private static final ModuleRegistry moduleRegistry = new ModuleRegistry();
+	private static final GuildStateStore guildStates = new GuildStateStore();
+	private static GuildLaneExecutor laneExecutor;
+	private static HashedWheelTimer timer;
+	private static final List<ModuleLane> moduleLanes = new ArrayList<>();
+	private static final Object[] settingsLocks = new Object[64]; //Striped locks that serialize the settings file access of a guild.
+	
+	private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 	private static final Logger logger = LoggerFactory.getLogger(SerpensBot.class);
 	
+	static
+	{
+		Arrays.setAll(SerpensBot.settingsLocks, i -> new Object());
+		
+		//Write the queued log events before the JVM exits.
+		Runtime.getRuntime().addShutdownHook(new Thread(LoggerListener::stopEventLog, "SerpensBot-EventLog-Drain"));
+	}
+	
 	private SerpensBot() {}
 	
 	public static void start()
 	{
+		//Write the pending settings of a previous run before changing anything.
+		SerpensBot.settingsPersister.drain();
+		
 		//Load language.
 		SerpensBot.language = loadLanguage();
 		
@@ -52,18 +105,57 @@ public class SerpensBot
 			return;
 		}
 		
+		SerpensBot.botData = data;
+		
+		//Running on another storage would write the settings where the next start does not read them.
+		if (!SerpensBot.openSettingsStorage(data))
+			return;
+		
 		//Setting headless mode. We are using some drawing function without the gui.
 		System.setProperty("java.awt.headless", "true");
 		
+		//Clear the modules, their interactions and guild settings, the command index and the module lanes left by a previous run.
+		for (BotListener module : SerpensBot.getModules())
+			module.getInteractionRegistry().clear();
+		
+		SerpensBot.moduleRegistry.clear();
+		SerpensBot.guildStates.clear();
+		SerpensBot.commandDispatcher.clear();
+		SerpensBot.shutdownModuleLanes();
+		SerpensBot.api = null;
+		SerpensBot.shardManager = null;
+		SerpensBot.gatewaySettings = null;
+		
+		//The modules are registered before connecting, so their needs are known when the connection is configured.
+		SerpensBot.addModule(new SettingsListener());
+		SerpensBot.addModule(new BaseListener());
+		SerpensBot.addModule(new LoggerListener());
+		LoggerListener.startEventLog(data.getEventLog());
+		
+		if (data.getOwner() == null || data.getOwner().isBlank())
+		{
+			logger.error(SerpensBot.getMessage("owner_not_set"));
+			return;
+		}
+		
+		//Set the owner of the bot.
+		SerpensBot.ownerId = data.getOwner();
+		
+		//Modules added here are part of the connection configuration.
+		if (SerpensBot.initCallback != null)
+			SerpensBot.initCallback.onPreConnect();
+		
 		try
 		{
-			SerpensBot.api = JDABuilder
-					.createDefault(data.getToken())
-					.setChunkingFilter(ChunkingFilter.ALL)
-					.setMemberCachePolicy(MemberCachePolicy.ALL)
-					.enableIntents(GatewayIntent.GUILD_MEMBERS, GatewayIntent.MESSAGE_CONTENT)
-					.build();
-			SerpensBot.api.awaitReady();
+			if (data.getSharding() != null && data.getSharding().isEnabled())
+			{
+				if (!SerpensBot.startShards(data))
+					return;
+			}
+			else
+			{
+				SerpensBot.startSingle(data);
+			}
 		}
 		catch (InterruptedException e)
 		{
@@ -72,33 +164,312 @@ public class SerpensBot
 			return;
 		}
 		
-		api.addEventListener(new SettingsListener());
-		api.addEventListener(new BaseListener());
-		api.addEventListener(new LoggerListener());
+		if (SerpensBot.initCallback != null)
+			SerpensBot.initCallback.onInit();
 		
-		if (data.getOwner() == null || data.getOwner().isBlank())
+		SerpensBot.updateGlobalCommands();
+		
+		//Load the settings of every guild now, so the first interaction of a guild does not wait for them.
+		if (data.isPreloadSettings())
+			SerpensBot.preloadSettings(data.getPreloadThreads());
+		
+		logger.info(SerpensBot.getMessage("bot_ready"));
+		
+		SerpensBotWebServer.start(data.getApiPort(), data.getApiPassword());
+	}
+	
+	/**
+	 * Connect to the gateway with a single {@link JDA} instance and wait until it is ready.
+	 *
+	 * @param data
+	 * 		The bot data.
+	 */
+	private static void startSingle(BotData data) throws InterruptedException
+	{
+		GatewaySettings gateway = GatewaySettings.create(data, SerpensBot.getModules());
+		SerpensBot.gatewaySettings = gateway;
+		
+		JDABuilder builder = JDABuilder
+				.createLight(data.getToken(), gateway.getIntents())
+				.enableCache(gateway.getCacheFlags())
+				.setChunkingFilter(gateway.getChunkingFilter())
+				.setMemberCachePolicy(gateway.getMemberCachePolicy())
+				.addEventListeners(SerpensBot.getEventListeners());
+		
+		//Handle the events outside the JDA event thread, keeping them ordered per guild.
+		if ("virtual".equalsIgnoreCase(data.getEventExecutor()))
+			builder.setEventManager(new GuildOrderedEventManager(SerpensBot.getLaneExecutor()));
+		else
+			builder.setEventManager(new ModuleEventManager());
+		
+		SerpensBot.shardManager = null;
+		SerpensBot.api = builder.build();
+		SerpensBot.api.awaitReady();
+	}
+	
+	/**
+	 * Connect to the gateway with a {@link ShardManager} running the shards set in the bot data, and wait until every
+	 * shard is ready. Every shard has its own event manager, but they all share the same lane executor. When the number
+	 * of shards is the one recommended by Discord the process runs all of them, the range of the bot data is ignored.
+	 *
+	 * @param data
+	 * 		The bot data.
+	 *
+	 * @return
+	 * 		False if a shard failed to log in or no shard became ready within the timeout, the shards are shut down.
+	 */
+	private static boolean startShards(BotData data) throws InterruptedException
+	{
+		ShardSettings sharding = data.getSharding();
+		
+		GatewaySettings gateway = GatewaySettings.create(data, SerpensBot.getModules());
+		SerpensBot.gatewaySettings = gateway;
+		
+		DefaultShardManagerBuilder builder = DefaultShardManagerBuilder
+				.createLight(data.getToken(), gateway.getIntents())
+				.enableCache(gateway.getCacheFlags())
+				.setShardsTotal(sharding.getShardCount())
+				.setChunkingFilter(gateway.getChunkingFilter())
+				.setMemberCachePolicy(gateway.getMemberCachePolicy())
+				.addEventListeners(SerpensBot.getEventListeners());
+		
+		//The range can be set only when the total number of shards is known.
+		if (sharding.getShardCount() > 0)
 		{
-			logger.error(SerpensBot.getMessage("owner_not_set"));
-			return;
+			int maxShard = sharding.getMaxShard() < 0 ? sharding.getShardCount() - 1 : sharding.getMaxShard();
+			builder.setShards(sharding.getMinShard(), maxShard);
+		}
+		else if (sharding.getMinShard() != 0 || sharding.getMaxShard() >= 0)
+		{
+			logger.warn(SerpensBot.getMessage("shards_range_ignored"));
 		}
 		
-		//Set the owner of the bot.
-		SerpensBot.ownerId = data.getOwner();
+		//Handle the events outside the JDA event thread, keeping them ordered per guild.
+		if ("virtual".equalsIgnoreCase(data.getEventExecutor()))
+			builder.setEventManagerProvider(shardID -> new GuildOrderedEventManager(SerpensBot.getLaneExecutor()));
+		else
+			builder.setEventManagerProvider(shardID -> new ModuleEventManager());
 		
-		if (SerpensBot.initCallback != null)
-				SerpensBot.initCallback.onInit();
+		SerpensBot.api = null;
+		SerpensBot.shardManager = builder.build();
 		
-		logger.info(SerpensBot.getMessage("bot_ready"));
+		int shardsTotal = SerpensBot.shardManager.getShardsTotal();
+		int minShard = sharding.getShardCount() > 0 ? sharding.getMinShard() : 0;
+		int maxShard = sharding.getShardCount() > 0 && sharding.getMaxShard() >= 0 ? sharding.getMaxShard() : shardsTotal - 1;
+		int expectedShards = maxShard - minShard + 1;
 		
-		SerpensBotWebServer.start(data.getApiPort(), data.getApiPassword());
+		logger.info(SerpensBot.getMessage("shards_starting", expectedShards, shardsTotal));
+		
+		//The shard manager creates the shards one at a time, wait until all of them are created and ready. The timeout
+		//starts again every time a shard is created or becomes ready.
+		long deadline = System.currentTimeMillis() + sharding.getStartTimeout();
+		int lastProgress = 0;
+		
+		while (true)
+		{
+			List<JDA> shards = SerpensBot.shardManager.getShards();
+			int readyShards = 0;
+			
+			for (JDA shard : shards)
+			{
+				JDA.Status status = shard.getStatus();
+				
+				if (status == JDA.Status.FAILED_TO_LOGIN || status == JDA.Status.SHUTTING_DOWN || status == JDA.Status.SHUTDOWN)
+				{
+					logger.error(SerpensBot.getMessage("shards_start_failed", shard.getShardInfo().getShardId(), status));
+					SerpensBot.shardManager.shutdown();
+					return false;
+				}
+				
+				if (status == JDA.Status.CONNECTED)
+					readyShards++;
+			}
+			
+			if (readyShards >= expectedShards)
+				return true;
+			
+			int progress = shards.size() + readyShards;
+			
+			if (progress != lastProgress)
+			{
+				lastProgress = progress;
+				deadline = System.currentTimeMillis() + sharding.getStartTimeout();
+			}
+			else if (System.currentTimeMillis() > deadline)
+			{
+				logger.error(SerpensBot.getMessage("shards_start_timeout", readyShards, expectedShards, sharding.getStartTimeout()));
+				SerpensBot.shardManager.shutdown();
+				return false;
+			}
+			
+			Thread.sleep(1000);
+		}
 	}
 	
 	/**
-	 * @return The JDA api.
+	 * @return The listeners registered on the connection when it is created: the command dispatcher and every module.
+	 */
+	private static Object[] getEventListeners()
+	{
+		List<Object> listeners = new ArrayList<>();
+		listeners.add(SerpensBot.commandDispatcher);
+		listeners.addAll(SerpensBot.getModules());
+		
+		return listeners.toArray();
+	}
+	
+	/**
+	 * Disconnect the bot from the gateway, removing every listener first so no event reaches the modules while the
+	 * shards are shutting down.
+	 */
+	public static void stop()
+	{
+		for (JDA shard : SerpensBot.getShards())
+			shard.removeEventListener(shard.getRegisteredListeners().toArray());
+		
+		if (SerpensBot.shardManager != null)
+			SerpensBot.shardManager.shutdown();
+		else if (SerpensBot.api != null)
+			SerpensBot.api.shutdown();
+		
+		//No more events will be queued, write the ones left.
+		LoggerListener.stopEventLog();
+	}
+	
+	/**
+	 * @return The JDA api. In sharded mode one of the running shards, which can be used for everything that does not
+	 * depend on a guild.
 	 */
 	public static JDA getApi()
 	{
-		return api;
+		ShardManager manager = SerpensBot.shardManager;
+		
+		if (manager == null)
+			return api;
+		
+		List<JDA> shards = manager.getShards();
+		return shards.isEmpty() ? null : shards.get(0);
+	}
+	
+	/**
+	 * @return The shard manager of the bot, or null if the bot is not sharded.
+	 */
+	public static ShardManager getShardManager()
+	{
+		return shardManager;
+	}
+	
+	/**
+	 * @return The JDA instances run by this process: every shard in sharded mode, the only instance otherwise.
+	 */
+	public static List<JDA> getShards()
+	{
+		ShardManager manager = SerpensBot.shardManager;
+		
+		if (manager != null)
+			return manager.getShards();
+		
+		JDA jda = SerpensBot.api;
+		return jda != null ? List.of(jda) : List.of();
+	}
+	
+	/**
+	 * Get the guild with the given id from the shard that handles it.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 *
+	 * @return
+	 * 		The guild, or null if no shard of this process handles it.
+	 */
+	public static Guild getGuildById(String guildID)
+	{
+		ShardManager manager = SerpensBot.shardManager;
+		
+		if (manager != null)
+			return manager.getGuildById(guildID);
+		
+		JDA jda = SerpensBot.api;
+		return jda != null ? jda.getGuildById(guildID) : null;
+	}
+	
+	/**
+	 * @return The guilds handled by every shard of this process.
+	 */
+	public static List<Guild> getGuilds()
+	{
+		ShardManager manager = SerpensBot.shardManager;
+		
+		if (manager != null)
+			return manager.getGuilds();
+		
+		JDA jda = SerpensBot.api;
+		return jda != null ? jda.getGuilds() : List.of();
+	}
+	
+	/**
+	 * Register the given listener on every shard, including the ones started later by the shard manager.
+	 */
+	private static void addEventListener(Object listener)
+	{
+		if (SerpensBot.shardManager != null)
+			SerpensBot.shardManager.addEventListener(listener);
+		else if (SerpensBot.api != null)
+			SerpensBot.api.addEventListener(listener);
+	}
+	
+	/**
+	 * @return The data of the bot loaded from the bot.json file, or null if the bot was not started.
+	 */
+	public static BotData getBotData()
+	{
+		return botData;
+	}
+	
+	/**
+	 * @return The {@link CommandDispatcher} that routes slash commands to the modules.
+	 */
+	public static CommandDispatcher getCommandDispatcher()
+	{
+		return commandDispatcher;
+	}
+	
+	/**
+	 * @return The {@link CommandSyncScheduler} that synchronizes the command lists of many guilds.
+	 */
+	public static CommandSyncScheduler getCommandSyncScheduler()
+	{
+		return commandSyncScheduler;
+	}
+	
+	/**
+	 * @return The settings of the modules for every guild.
+	 */
+	public static GuildStateStore getGuildStates()
+	{
+		return guildStates;
+	}
+	
+	/**
+	 * @return The executor that runs the event handlers on per-guild lanes, created the first time it is requested.
+	 */
+	public static synchronized GuildLaneExecutor getLaneExecutor()
+	{
+		if (SerpensBot.laneExecutor == null)
+			SerpensBot.laneExecutor = new GuildLaneExecutor();
+		
+		return SerpensBot.laneExecutor;
+	}
+	
+	/**
+	 * @return The timer that expires the interactions, created the first time it is requested.
+	 */
+	public static synchronized HashedWheelTimer getTimer()
+	{
+		if (SerpensBot.timer == null)
+			SerpensBot.timer = new HashedWheelTimer(1, TimeUnit.SECONDS, 512);
+		
+		return SerpensBot.timer;
 	}
 	
 	public static void setOnInitCallback(SerpensBotInitCallback callback)
@@ -112,7 +483,83 @@ public class SerpensBot
 	 */
 	public static void addModule(BotListener listener)
 	{
-		SerpensBot.api.addEventListener(listener);
+		if (!SerpensBot.moduleRegistry.register(listener))
+			return;
+		
+		listener.setLane(SerpensBot.createModuleLane(listener.getInternalID()));
+		
+		//The modules registered before connecting are added by the builder.
+		if (SerpensBot.api != null || SerpensBot.shardManager != null)
+		{
+			SerpensBot.addEventListener(listener);
+			SerpensBot.checkGatewayNeeds(listener);
+		}
+	}
+	
+	/**
+	 * Warn if a module added after connecting needs intents or cache flags that are not enabled on the connection, the
+	 * module would not receive its events or would find the caches empty.
+	 */
+	private static void checkGatewayNeeds(BotListener listener)
+	{
+		GatewaySettings gateway = SerpensBot.gatewaySettings;
+		
+		if (gateway == null)
+			return;
+		
+		Set<GatewayIntent> missingIntents = EnumSet.noneOf(GatewayIntent.class);
+		Set<CacheFlag> missingCacheFlags = EnumSet.noneOf(CacheFlag.class);
+		
+		missingIntents.addAll(listener.getIntents());
+		missingIntents.removeAll(gateway.getIntents());
+		missingCacheFlags.addAll(listener.getCacheFlags());
+		missingCacheFlags.removeAll(gateway.getCacheFlags());
+		
+		if (!missingIntents.isEmpty() || !missingCacheFlags.isEmpty())
+			logger.warn(SerpensBot.getMessage("module_gateway_needs_missing", listener.getInternalID(), missingIntents, missingCacheFlags));
+	}
+	
+	/**
+	 * Create the execution lane of the module with the given id using the limits set in "bot.json".
+	 *
+	 * @param moduleID
+	 * 		The internal id of the module.
+	 *
+	 * @return
+	 * 		The lane of the module, or null if no limits are set for the module.
+	 */
+	private static ModuleLane createModuleLane(String moduleID)
+	{
+		Map<String, ModuleLaneSettings> lanesSettings = SerpensBot.botData.getModuleLanes();
+		
+		if (lanesSettings == null)
+			return null;
+		
+		ModuleLaneSettings settings = lanesSettings.getOrDefault(moduleID, lanesSettings.get("default"));
+		
+		if (settings == null)
+			return null;
+		
+		ModuleLane lane = new ModuleLane(moduleID, settings);
+		
+		synchronized (SerpensBot.moduleLanes)
+		{
+			SerpensBot.moduleLanes.add(lane);
+		}
+		
+		return lane;
+	}
+	
+	/**
+	 * Shut down the lanes of the modules, letting them finish the events already queued.
+	 */
+	private static void shutdownModuleLanes()
+	{
+		synchronized (SerpensBot.moduleLanes)
+		{
+			SerpensBot.moduleLanes.forEach(ModuleLane::shutdown);
+			SerpensBot.moduleLanes.clear();
+		}
 	}
 	
 	/**
@@ -124,12 +571,39 @@ public class SerpensBot
 	}
 	
 	/**
-	 * Update command list for all guilds.
+	 * Update command list for all guilds. The updates are paced by the {@link CommandSyncScheduler} and sent only to the
+	 * guilds where the command list changed.
 	 */
 	public static void updateAllGuildsCommands()
 	{
-		for (Guild guild : api.getGuilds())
-			SerpensBot.updateGuildCommands(guild);
+		SerpensBot.updateAllGuildsCommands(false);
+	}
+	
+	/**
+	 * Update command list for all guilds. The updates are paced by the {@link CommandSyncScheduler}.
+	 *
+	 * @param force
+	 * 		Whether the list is sent also to the guilds where it did not change, for when the commands of the guilds
+	 * 		have been changed outside the bot.
+	 */
+	public static void updateAllGuildsCommands(boolean force)
+	{
+		SerpensBot.commandSyncScheduler.submit(SerpensBot.getGuilds(), force);
+	}
+	
+	/**
+	 * Update the command list of the given guild. The list is sent only if its fingerprint is different from the one of
+	 * the last list sent to the guild.
+	 *
+	 * @param guild
+	 * 		The guild that will receive the update command list.
+	 *
+	 * @return
+	 * 		A future completed with true if the list has been sent, false if the guild already had the same list.
+	 */
+	public static CompletableFuture<Boolean> updateGuildCommands(Guild guild)
+	{
+		return SerpensBot.updateGuildCommands(guild, false);
 	}
 	
 	/**
@@ -137,25 +611,178 @@ public class SerpensBot
 	 *
 	 * @param guild
 	 * 		The guild that will receive the update command list.
+	 * @param force
+	 * 		Whether the list is sent even if its fingerprint is the same of the last list sent to the guild.
+	 *
+	 * @return
+	 * 		A future completed with true if the list has been sent, false if the guild already had the same list.
 	 */
-	public static void updateGuildCommands(Guild guild)
+	public static CompletableFuture<Boolean> updateGuildCommands(Guild guild, boolean force)
 	{
-		CommandListUpdateAction commands = guild.updateCommands();
-		for (Object registeredListener : SerpensBot.api.getRegisteredListeners())
+		boolean hybrid = SerpensBot.isHybridCommandMode();
+		List<CommandData> commandList = new ArrayList<>();
+		
+		for (BotListener listener : SerpensBot.getModules())
 		{
-			if (registeredListener instanceof BotListener listener)
+			if (!listener.isEnabledOrDefault(guild.getId()))
+				continue;
+			
+			//In hybrid mode the guild gets only the commands that differ from the global ones.
+			if (hybrid)
 			{
-				if (!listener.isEnabledOrDefault(guild.getId()))
-					return;
-				
-				for (CommandData commandData : listener.generateCommands(guild))
-					commands.addCommands(commandData);
-				
-				commands.addCommands(listener.generateContextMenuOptions());
+				commandList.addAll(listener.generateGuildOverrides(guild));
+				continue;
+			}
+			
+			commandList.addAll(listener.generateCommands(guild));
+			commandList.addAll(listener.generateContextMenuOptions());
+		}
+		
+		//Skip the update if the guild already has these commands.
+		GuildState guildState = SerpensBot.guildStates.getOrCreate(guild.getIdLong(), SerpensBot.moduleRegistry.size());
+		String fingerprint = SerpensBot.fingerprintCommands(commandList);
+		
+		if (!force && fingerprint.equals(guildState.getCommandsFingerprint()))
+		{
+			logger.info(SerpensBot.getMessage("guild_commands_unchanged", guild.getName()));
+			return CompletableFuture.completedFuture(false);
+		}
+		
+		return guild.updateCommands()
+				.addCommands(commandList)
+				.submit()
+				.thenApply(commands ->
+				{
+					guildState.setCommandsFingerprint(fingerprint);
+					SerpensBot.saveSettings(guild.getId());
+					
+					logger.info(SerpensBot.getMessage("guild_commands_updated", guild.getName()));
+					
+					return true;
+				})
+				.whenComplete((sent, e) ->
+				{
+					if (e != null)
+						logger.error(SerpensBot.getMessage("guild_commands_update_error", guild.getName()), e);
+				});
+	}
+	
+	/**
+	 * Forget the fingerprint of the command list sent to the given guild. Discord deletes the commands of a guild when
+	 * the bot leaves it, so the next update must send the list again.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 */
+	public static void clearCommandsFingerprint(String guildID)
+	{
+		GuildState guildState = SerpensBot.guildStates.get(Long.parseLong(guildID));
+		
+		if (guildState == null || guildState.getCommandsFingerprint() == null)
+			return;
+		
+		guildState.setCommandsFingerprint(null);
+		SerpensBot.saveSettings(guildID);
+	}
+	
+	/**
+	 * Update the global command list. In "hybrid" command mode it contains the commands of the modules with their default
+	 * prefix and every context menu. In "guild" mode the global list is emptied only if a previous run registered it in
+	 * "hybrid" mode, otherwise it is left untouched so the global commands registered by the application are kept.
+	 * The global commands belong to the application, so in sharded mode they are sent by one shard only.
+	 */
+	public static void updateGlobalCommands()
+	{
+		Path markerFile = Paths.get(SerpensBot.SERVER_DATA_FOLDER, SerpensBot.HYBRID_COMMANDS_FILE);
+		boolean hybrid = SerpensBot.isHybridCommandMode();
+		List<CommandData> commandList = new ArrayList<>();
+		
+		if (!hybrid && !Files.exists(markerFile))
+			return;
+		
+		if (hybrid)
+		{
+			for (BotListener listener : SerpensBot.getModules())
+			{
+				commandList.addAll(listener.generateGlobalCommands());
+				commandList.addAll(listener.generateContextMenuOptions());
+			}
+			
+			//Remember the registration before sending it, so "guild" mode removes it even if this run stops meanwhile.
+			try
+			{
+				Files.createDirectories(markerFile.getParent());
+				Files.write(markerFile, new byte[0]);
+			}
+			catch (IOException e)
+			{
+				logger.error(e.getLocalizedMessage(), e);
 			}
 		}
 		
-		commands.queue(a -> logger.info(SerpensBot.getMessage("guild_commands_updated", guild.getName())));
+		SerpensBot.getApi().updateCommands()
+				.addCommands(commandList)
+				.queue(commands ->
+				{
+					logger.info(SerpensBot.getMessage("global_commands_updated", commands.size()));
+					
+					if (hybrid)
+						return;
+					
+					try
+					{
+						Files.deleteIfExists(markerFile);
+					}
+					catch (IOException e)
+					{
+						logger.error(e.getLocalizedMessage(), e);
+					}
+				});
+	}
+	
+	/**
+	 * @return True if the commands with default prefixes are registered globally.
+	 */
+	public static boolean isHybridCommandMode()
+	{
+		BotData data = SerpensBot.botData;
+		return data != null && data.isHybridCommandMode();
+	}
+	
+	/**
+	 * Compute the fingerprint of the given command list. The order of the commands does not change the fingerprint.
+	 *
+	 * @param commandList
+	 * 		The list of commands.
+	 *
+	 * @return
+	 * 		The SHA-256 of the serialized commands, as a hex string.
+	 */
+	private static String fingerprintCommands(List<CommandData> commandList)
+	{
+		List<String> serializedCommands = new ArrayList<>(commandList.size());
+		for (CommandData commandData : commandList)
+			serializedCommands.add(commandData.toData().toString());
+		
+		Collections.sort(serializedCommands);
+		
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			
+			for (String serializedCommand : serializedCommands)
+			{
+				digest.update(serializedCommand.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) '\n');
+			}
+			
+			return HexFormat.of().formatHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			//Every Java platform must support SHA-256.
+			throw new IllegalStateException(e);
+		}
 	}
 	
 	/**
@@ -167,7 +794,6 @@ public class SerpensBot
 	private static BotData loadBotData()
 	{
 		File tokenFile = new File("bot.json");
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
 		logger.info(SerpensBot.getMessage("reading_main_settings"));
 		
 		try (BufferedReader reader = new BufferedReader(new FileReader(tokenFile)))
@@ -189,15 +815,17 @@ public class SerpensBot
 	
 	/**
 	 * Load the {@link ResourceBundle} from the root directory. If there is no language file a default one will be used.
+	 * The messages of the bundle are compiled into the table used by {@link #getMessage(String, Object...)}.
 	 *
 	 * @return
 	 * 		The resource bundle that has been loaded.
 	 */
 	public static ResourceBundle loadLanguage()
 	{
-		try
+		try (InputStream stream = Files.newInputStream(Paths.get("SerpensBot.properties")))
 		{
-			ResourceBundle language = new PropertyResourceBundle(Files.newInputStream(Paths.get("SerpensBot.properties")));
+			ResourceBundle language = new PropertyResourceBundle(stream);
+			SerpensBot.messages = new MessageTable(language);
 			
 			logger.info(language.getString("loaded_resource_bundle_external"));
 			
@@ -205,41 +833,49 @@ public class SerpensBot
 		}
 		catch (IOException e)
 		{
-			logger.info(language.getString("loaded_resource_bundle_default"));
+			SerpensBot.messages = SerpensBot.defaultMessages;
+			
+			logger.info(SerpensBot.defaultLanguage.getString("loaded_resource_bundle_default"));
 			
 			return SerpensBot.defaultLanguage;
 		}
 	}
 	
-	public static String getMessage(String key)
+	/**
+	 * Get the compiled template of the message with the given key. If the language file has not the key the message of
+	 * the default language will be used.
+	 */
+	private static MessageTemplate getTemplate(String key)
 	{
 		//Check if the property file has the given key.
-		if (SerpensBot.language.containsKey(key))
-			return SerpensBot.language.getString(key);
+		MessageTemplate template = SerpensBot.messages.get(key);
+		
+		if (template != null)
+			return template;
 		
 		logger.warn(SerpensBot.defaultLanguage.getString("language_key_not_found"), key);
-		return SerpensBot.defaultLanguage.getString(key);
+		template = SerpensBot.defaultMessages.get(key);
+		
+		//Let the bundle throw the exception for the missing key.
+		return template != null ? template : MessageTemplate.compile(SerpensBot.defaultLanguage.getString(key));
+	}
+	
+	public static String getMessage(String key)
+	{
+		return SerpensBot.getTemplate(key).getPattern();
 	}
 	
 	public static String getMessage(String key, Object... args)
 	{
-		return String.format(SerpensBot.getMessage(key), args);
+		return SerpensBot.getTemplate(key).format(args);
 	}
 	
 	/**
-	 * @return The list of modules of the bot.
+	 * @return The immutable list of modules of the bot.
 	 */
 	public static List<BotListener> getModules()
 	{
-		ArrayList<BotListener> modules = new ArrayList<>();
-		
-		for (Object registeredListener : SerpensBot.api.getRegisteredListeners())
-		{
-			if (registeredListener instanceof BotListener listener)
-				modules.add(listener);
-		}
-		
-		return modules;
+		return SerpensBot.moduleRegistry.getModules();
 	}
 	
 	/**
@@ -252,16 +888,7 @@ public class SerpensBot
 	 */
 	public static BotListener getModuleById(String moduleID)
 	{
-		//Get the module with the correct id and get its module prefix.
-		for (BotListener listener : SerpensBot.getModules())
-		{
-			if (listener.getInternalID().equals(moduleID))
-			{
-				return listener;
-			}
-		}
-		
-		return null;
+		return SerpensBot.moduleRegistry.getModule(moduleID);
 	}
 	
 	/**
@@ -275,73 +902,251 @@ public class SerpensBot
 	 */
 	public static boolean loadSettings(String guildID)
 	{
-		File settingsFile = new File(Paths.get("server_data", guildID, SerpensBot.SETTINGS_FOLDER, "settings.json").toString());
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		Guild guild = SerpensBot.api.getGuildById(guildID);
+		return SerpensBot.loadSettings(guildID, true);
+	}
+	
+	/**
+	 * Load the setting of the bot for the given guild.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param updateCommands
+	 * 		Whether the command list of the guild should be updated after loading the settings.
+	 *
+	 * @return
+	 * 		-True if the settings were loaded, false otherwise.
+	 */
+	public static boolean loadSettings(String guildID, boolean updateCommands)
+	{
+		Guild guild = SerpensBot.getGuildById(guildID);
 		
 		if (guild == null)
 			return false;
 		
 		logger.info(SerpensBot.getMessage("loading_guild_settings", guild.getName()));
 		
-		try (BufferedReader reader = new BufferedReader(new FileReader(settingsFile)))
+		synchronized (SerpensBot.getSettingsLock(guildID))
 		{
-			SettingsData settingsData = gson.fromJson(reader, SettingsData.class);
+			//Write the pending changes first, or reading the storage would revert them. The lock keeps new changes out
+			//until the settings are loaded.
+			SerpensBot.settingsPersister.flush(guildID);
 			
-			//Check if the data was read correctly.
-			if (settingsData == null)
-				return false;
+			SettingsData settingsData;
 			
-			Map<String, String> modulePrefixes = settingsData.getModulePrefixes();
-			Map<String, Boolean> moduleStates = settingsData.getModuleStates();
+			try
+			{
+				settingsData = SerpensBot.settingsStorage.load(guildID);
+			}
+			catch (IOException e)
+			{
+				logger.error(e.getLocalizedMessage(), e);
+				return false;
+			}
 			
-			for (BotListener listener : SerpensBot.getModules())
+			if (settingsData == null)
 			{
-				//Set listener prefix, if the key is not found set it to the default value.
-				listener.setModulePrefix(guildID, modulePrefixes.getOrDefault(listener.getInternalID(), listener.getInternalID()));
+				logger.info(SerpensBot.getMessage("no_guild_settings_file", guild.getName()));
+				logger.info(SerpensBot.getMessage("guild_settings_file_creation", guild.getName()));
+				
+				//Initialize default values.
+				for (BotListener module : getModules())
+					module.setModulePrefix(guildID, module.getInternalID());
+				
+				SerpensBot.saveSettings(guildID);
+			}
+			else
+			{
+				Map<String, String> modulePrefixes = settingsData.getModulePrefixes();
+				Map<String, Boolean> moduleStates = settingsData.getModuleStates();
+				
+				//Restore the fingerprint of the commands last sent to the guild.
+				SerpensBot.guildStates
+						.getOrCreate(guild.getIdLong(), SerpensBot.moduleRegistry.size())
+						.setCommandsFingerprint(settingsData.getCommandsFingerprint());
 				
-				//Set listener state, if the key is not found set it to the default value.
-				listener.setEnabled(guildID, moduleStates.getOrDefault(listener.getInternalID(), true));
+				for (BotListener listener : SerpensBot.getModules())
+				{
+					//Set listener prefix, if the key is not found set it to the default value.
+					listener.setModulePrefix(guildID, modulePrefixes.getOrDefault(listener.getInternalID(), listener.getInternalID()));
+					
+					//Set listener state, if the key is not found set it to the default value.
+					listener.setEnabled(guildID, moduleStates.getOrDefault(listener.getInternalID(), true));
+				}
 			}
 			
-			SerpensBot.updateGuildCommands(guild);
+			SerpensBot.guildStates.getOrCreate(guild.getIdLong(), SerpensBot.moduleRegistry.size()).setLoaded(true);
+			
+			if (updateCommands)
+				SerpensBot.updateGuildCommands(guild);
 		}
-		catch (FileNotFoundException e)
+		
+		return true;
+	}
+	
+	/**
+	 * @param guildID
+	 * 		The id of the guild.
+	 *
+	 * @return True if the settings of the given guild have been loaded.
+	 */
+	public static boolean isSettingsLoaded(String guildID)
+	{
+		GuildState state = SerpensBot.guildStates.get(Long.parseLong(guildID));
+		return state != null && state.isLoaded();
+	}
+	
+	/**
+	 * Load the settings of every guild on a bounded pool of threads, then queue the synchronization of their commands on
+	 * the {@link CommandSyncScheduler}. Logs how long the loading took.
+	 *
+	 * @param threads
+	 * 		The number of threads that load the settings.
+	 */
+	private static void preloadSettings(int threads)
+	{
+		List<Guild> guilds = SerpensBot.getGuilds();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		AtomicInteger failed = new AtomicInteger();
+		AtomicLong loadTime = new AtomicLong(); //Sum of the time spent loading every guild.
+		AtomicLong slowestLoad = new AtomicLong();
+		long start = System.nanoTime();
+		
+		logger.info(SerpensBot.getMessage("settings_preload_started", guilds.size(), Math.max(1, threads)));
+		
+		for (Guild guild : guilds)
 		{
-			logger.info(SerpensBot.getMessage("no_guild_settings_file", guild.getName()));
-			logger.info(SerpensBot.getMessage("guild_settings_file_creation", guild.getName()));
-			
-			//Initialize default values.
-			for (BotListener module : getModules())
-				module.setModulePrefix(guildID, module.getInternalID());
-			
-			SerpensBot.saveSettings(guildID);
+			pool.execute(() ->
+			{
+				long guildStart = System.nanoTime();
+				
+				if (!SerpensBot.loadSettings(guild.getId(), false))
+					failed.incrementAndGet();
+				
+				long elapsed = System.nanoTime() - guildStart;
+				loadTime.addAndGet(elapsed);
+				slowestLoad.accumulateAndGet(elapsed, Math::max);
+			});
+		}
+		
+		pool.shutdown();
+		
+		try
+		{
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+			return;
+		}
+		
+		long totalTime = System.nanoTime() - start;
+		long averageTime = guilds.isEmpty() ? 0 : loadTime.get() / guilds.size();
+		
+		logger.info(SerpensBot.getMessage("settings_preload_done",
+				guilds.size() - failed.get(),
+				failed.get(),
+				TimeUnit.NANOSECONDS.toMillis(totalTime),
+				TimeUnit.NANOSECONDS.toMicros(averageTime),
+				TimeUnit.NANOSECONDS.toMillis(slowestLoad.get())));
+		
+		//The commands are synchronized in background, skipping the guilds that did not change.
+		SerpensBot.commandSyncScheduler.submit(guilds);
+	}
+	
+	/**
+	 * Open the settings storage selected in the bot data, closing the previous one. When the "log" storage is created
+	 * for the first time the settings of the JSON files are imported into it.
+	 *
+	 * @param data
+	 * 		The bot data.
+	 *
+	 * @return
+	 * 		False if the selected storage cannot be opened, no storage is open in that case.
+	 */
+	private static boolean openSettingsStorage(BotData data)
+	{
+		try
+		{
+			if (SerpensBot.settingsStorage != null)
+				SerpensBot.settingsStorage.close();
 		}
 		catch (IOException e)
 		{
 			logger.error(e.getLocalizedMessage(), e);
-			return false;
 		}
 		
-		return true;
+		JsonSettingsStorage jsonStorage = new JsonSettingsStorage(Paths.get(SerpensBot.SERVER_DATA_FOLDER));
+		SerpensBot.settingsStorage = jsonStorage;
+		
+		if (!"log".equalsIgnoreCase(data.getSettingsStorage()))
+			return true;
+		
+		Path logFile = Paths.get(SerpensBot.SERVER_DATA_FOLDER, "settings.log");
+		
+		try
+		{
+			//The file appears only when the import of the JSON files is complete.
+			if (!Files.exists(logFile))
+			{
+				int count = LogSettingsStorage.createFrom(logFile, jsonStorage);
+				logger.info(SerpensBot.getMessage("settings_storage_migrated", count, logFile));
+			}
+			
+			SerpensBot.settingsStorage = new LogSettingsStorage(logFile);
+			return true;
+		}
+		catch (IOException e)
+		{
+			//The JSON files are outdated since the import, they must not be used instead of the log.
+			SerpensBot.settingsStorage = null;
+			logger.error(SerpensBot.getMessage("settings_storage_open_error", logFile), e);
+			return false;
+		}
+	}
+	
+	/**
+	 * @return The storage where the settings of the guilds are written.
+	 */
+	static SettingsStorage getSettingsStorage()
+	{
+		return SerpensBot.settingsStorage;
+	}
+	
+	/**
+	 * @return The lock that guards the settings file of the given guild.
+	 */
+	static Object getSettingsLock(String guildID)
+	{
+		return SerpensBot.settingsLocks[Math.floorMod(guildID.hashCode(), SerpensBot.settingsLocks.length)];
 	}
 	
 	/**
-	 * Save the guild setting.
+	 * Save the guild setting. The settings are written in background by the {@link SettingsPersister}, so repeated
+	 * changes are coalesced in a single write.
 	 *
 	 * @param guildID
 	 * 		The id of the guild.
 	 */
 	public static void saveSettings(String guildID)
 	{
-		File settingsFile = new File(Paths.get("server_data", guildID, SerpensBot.SETTINGS_FOLDER, "settings.json").toString());
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		Guild guild = SerpensBot.api.getGuildById(guildID);
-		
-		if (guild == null)
-			return;
-		
-		logger.info(SerpensBot.getMessage("saving_guild_settings", guild.getName()));
+		SerpensBot.settingsPersister.markDirty(guildID);
+	}
+	
+	/**
+	 * Create a snapshot of the current settings of the given guild.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 *
+	 * @return
+	 * 		The settings of the guild.
+	 */
+	static SettingsData createSettingsData(String guildID)
+	{
+		Guild guild = SerpensBot.getGuildById(guildID);
+		logger.info(SerpensBot.getMessage("saving_guild_settings", guild != null ? guild.getName() : guildID));
 		
 		//Init data containers.
 		SettingsData settingsData = new SettingsData();
@@ -358,30 +1163,9 @@ public class SerpensBot
 		settingsData.setModulePrefixes(modulePrefixes);
 		settingsData.setModuleStates(moduleStates);
 		
-		try (PrintWriter writer = new PrintWriter(new FileWriter(settingsFile)))
-		{
-			writer.println(gson.toJson(settingsData));
-		}
-		catch (FileNotFoundException e)
-		{
-			logger.info(SerpensBot.getMessage("guild_settings_file_missing", guild.getName()));
-			
-			try
-			{
-				settingsFile.getParentFile().mkdirs();
-				
-				if (settingsFile.createNewFile())
-					SerpensBot.saveSettings(guildID);
-			}
-			catch (IOException ex)
-			{
-				logger.error(e.getLocalizedMessage(), e);
-			}
-		}
-		catch (IOException e)
-		{
-			logger.error(e.getLocalizedMessage(), e);
-		}
+		GuildState guildState = SerpensBot.guildStates.get(Long.parseLong(guildID));
+		settingsData.setCommandsFingerprint(guildState != null ? guildState.getCommandsFingerprint() : null);
 		
+		return settingsData;
 	}
 }
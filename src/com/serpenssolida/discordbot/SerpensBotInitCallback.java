@@ -2,5 +2,15 @@ package com.serpenssolida.discordbot;
 
 public interface SerpensBotInitCallback
 {
+	/**
+	 * Called by {@link SerpensBot#start()} before the bot connects to Discord. The modules added here are part of the
+	 * connection configuration (their intents, cache flags and member cache are enabled), but the JDA api is not
+	 * available yet.
+	 */
+	default void onPreConnect() {}
+	
+	/**
+	 * Called by {@link SerpensBot#start()} when the bot is connected and ready, the JDA api is available.
+	 */
 	void onInit();
 }
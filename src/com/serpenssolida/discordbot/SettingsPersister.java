@@ -0,0 +1,154 @@
+package com.serpenssolida.discordbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persister of the guild settings.
+ *
+ * <p>Saving the settings of a guild only marks it as dirty: a background thread writes every dirty guild in a single
+ * batch after the flush delay, so many changes to the same guild cost a single write and the event threads never wait
+ * for the disk. The settings are written to the {@link com.serpenssolida.discordbot.storage.SettingsStorage} of the
+ * bot, which is synchronized after every batch. The pending writes are drained when the bot restarts and when the JVM
+ * shuts down. A failed write is retried with an exponential backoff.</p>
+ */
+public class SettingsPersister
+{
+	private final Set<String> dirtyGuilds = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+	private final AtomicLong retryDelay = new AtomicLong(0); //Delay in milliseconds of the last retry, 0 if the last batch succeeded.
+	private final ScheduledExecutorService executor;
+	
+	private static final long DEFAULT_FLUSH_DELAY = 1000;
+	private static final long MAX_RETRY_DELAY = 60000; //Maximum delay in milliseconds between two retries of a failed write.
+	private static final Logger logger = LoggerFactory.getLogger(SettingsPersister.class);
+	
+	SettingsPersister()
+	{
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "SerpensBot-Settings");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "SerpensBot-Settings-Drain"));
+	}
+	
+	/**
+	 * Mark the settings of the given guild as changed, they will be written by the background thread.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 */
+	public void markDirty(String guildID)
+	{
+		this.dirtyGuilds.add(guildID);
+		
+		if (this.flushScheduled.compareAndSet(false, true))
+			this.executor.schedule(this::flushAll, SettingsPersister.getFlushDelay(), TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Schedule a new flush after a failed write, doubling the delay of the previous retry.
+	 */
+	private void scheduleRetry()
+	{
+		if (!this.flushScheduled.compareAndSet(false, true))
+			return;
+		
+		long delay = this.retryDelay.updateAndGet(previous -> previous == 0 ? SettingsPersister.getFlushDelay() : Math.min(previous * 2, MAX_RETRY_DELAY));
+		
+		logger.warn(SerpensBot.getMessage("settings_flush_retry", this.dirtyGuilds.size(), delay));
+		this.executor.schedule(this::flushAll, delay, TimeUnit.MILLISECONDS);
+	}
+	
+	private static long getFlushDelay()
+	{
+		BotData data = SerpensBot.getBotData();
+		return data != null ? data.getSettingsFlushDelay() : DEFAULT_FLUSH_DELAY;
+	}
+	
+	/**
+	 * @param guildID
+	 * 		The id of the guild.
+	 *
+	 * @return True if the settings of the guild changed and have not been written yet.
+	 */
+	public boolean isDirty(String guildID)
+	{
+		return this.dirtyGuilds.contains(guildID);
+	}
+	
+	/**
+	 * Write the settings of every dirty guild on the calling thread.
+	 */
+	public void drain()
+	{
+		if (this.dirtyGuilds.isEmpty())
+			return;
+		
+		//Iterate over a copy, a failed guild is added back to the set.
+		for (String guildID : List.copyOf(this.dirtyGuilds))
+			this.flush(guildID);
+		
+		try
+		{
+			SerpensBot.getSettingsStorage().sync();
+		}
+		catch (IOException e)
+		{
+			logger.error(e.getLocalizedMessage(), e);
+		}
+	}
+	
+	/**
+	 * Write the settings of the given guild on the calling thread if they are dirty.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 */
+	public void flush(String guildID)
+	{
+		//The lock keeps an older snapshot from overwriting a newer one written by another thread.
+		synchronized (SerpensBot.getSettingsLock(guildID))
+		{
+			if (!this.dirtyGuilds.remove(guildID))
+				return;
+			
+			try
+			{
+				SerpensBot.getSettingsStorage().save(guildID, SerpensBot.createSettingsData(guildID));
+			}
+			catch (IOException e)
+			{
+				//Keep the guild dirty and try again later.
+				this.dirtyGuilds.add(guildID);
+				logger.error(e.getLocalizedMessage(), e);
+				this.scheduleRetry();
+			}
+		}
+	}
+	
+	private void flushAll()
+	{
+		this.flushScheduled.set(false);
+		
+		logger.debug(SerpensBot.getMessage("settings_flush", this.dirtyGuilds.size()));
+		this.drain();
+		
+		//Every write succeeded, the next failure starts the backoff again.
+		if (this.dirtyGuilds.isEmpty())
+			this.retryDelay.set(0);
+	}
+}
@@ -0,0 +1,40 @@
+package com.serpenssolida.discordbot;
+
+/**
+ * Sharding of the gateway connection, read from the "sharding" object of "bot.json".
+ */
+public class ShardSettings
+{
+	private int shardCount = 0; //Total number of shards, 0 to use a single connection, -1 to use the number recommended by Discord.
+	private int minShard = 0; //Id of the first shard run by this process.
+	private int maxShard = -1; //Id of the last shard run by this process, -1 for the last shard.
+	private long startTimeout = 120000; //Milliseconds the startup waits for the next shard to be ready before failing.
+	
+	public int getShardCount()
+	{
+		return this.shardCount;
+	}
+	
+	public int getMinShard()
+	{
+		return this.minShard;
+	}
+	
+	public int getMaxShard()
+	{
+		return this.maxShard;
+	}
+	
+	public long getStartTimeout()
+	{
+		return this.startTimeout;
+	}
+	
+	/**
+	 * @return True if the bot connects to the gateway using a shard manager.
+	 */
+	public boolean isEnabled()
+	{
+		return this.shardCount != 0;
+	}
+}
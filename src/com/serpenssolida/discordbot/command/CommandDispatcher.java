@@ -0,0 +1,178 @@
+package com.serpenssolida.discordbot.command;
+
+import com.serpenssolida.discordbot.MessageUtils;
+import com.serpenssolida.discordbot.SerpensBot;
+import com.serpenssolida.discordbot.interaction.ComponentId;
+import com.serpenssolida.discordbot.module.BotListener;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.GenericComponentInteractionCreateEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes every {@link SlashCommandInteractionEvent} to the {@link BotListener} that owns the command.
+ *
+ * <p>The dispatcher keeps an index of {@code (guildId, commandName) -> BotListener} that is updated by the modules
+ * every time their prefix or their state changes, so routing an interaction costs a single lookup instead of
+ * asking every registered module whether the command belongs to it.</p>
+ *
+ * <p>Commands that have the same name in every guild (like the {@code /help} command of the base module) are
+ * registered with {@link #addGlobalCommand(String, BotListener)}.</p>
+ *
+ * <p>The dispatcher also routes the components whose id is a {@link ComponentId} to the module encoded in it.</p>
+ */
+public class CommandDispatcher extends ListenerAdapter
+{
+	private final Map<String, Map<String, BotListener>> guildCommands = new ConcurrentHashMap<>(); //Guild id -> (command name -> module).
+	private final Map<String, BotListener> globalCommands = new ConcurrentHashMap<>(); //Command name -> module, valid in every guild.
+	
+	@Override
+	public void onSlashCommandInteraction(@NotNull SlashCommandInteractionEvent event)
+	{
+		Guild guild = event.getGuild();
+		
+		if (guild == null)
+			return;
+		
+		BotListener listener = this.getListener(guild.getId(), event.getName());
+		
+		//Only the global command of a module that is disabled in the guild, or renamed, gets an answer: any other command
+		//can belong to a module that handles it by itself.
+		if (listener == null)
+		{
+			if (!SerpensBot.isHybridCommandMode() || SerpensBot.getModuleById(event.getName()) == null)
+				return;
+			
+			MessageCreateData message = MessageUtils.buildErrorMessage(SerpensBot.getMessage("botlistener_command_error"), event.getUser(), SerpensBot.getMessage("commanddispatcher_command_unavailable"));
+			event.reply(message).setEphemeral(true).queue();
+			return;
+		}
+		
+		listener.runInLane(() -> listener.handleSlashCommand(event));
+	}
+	
+	@Override
+	public void onGenericComponentInteractionCreate(@NotNull GenericComponentInteractionCreateEvent event)
+	{
+		if (event.getGuild() == null)
+			return;
+		
+		ComponentId componentId = ComponentId.decode(event.getComponentId());
+		
+		if (componentId == null)
+			return;
+		
+		BotListener listener = SerpensBot.getModuleById(componentId.getModuleID());
+		
+		if (listener != null)
+			listener.runInLane(() -> listener.handleStatelessInteraction(event, componentId));
+	}
+	
+	/**
+	 * Get the module that owns the command with the given name in the given guild. If the guild has not been indexed
+	 * yet its settings will be loaded.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param commandName
+	 * 		The name of the main command.
+	 *
+	 * @return
+	 * 		The module that owns the command, or null if no module owns it.
+	 */
+	public BotListener getListener(String guildID, String commandName)
+	{
+		Map<String, BotListener> commands = this.guildCommands.get(guildID);
+		
+		//Index the guild if it was never seen before.
+		if (commands == null)
+		{
+			SerpensBot.loadSettings(guildID);
+			commands = this.guildCommands.get(guildID);
+		}
+		
+		BotListener listener = commands != null ? commands.get(commandName) : null;
+		
+		if (listener == null)
+			listener = this.globalCommands.get(commandName);
+		
+		//In hybrid mode the commands with the default prefix are global, so they work in every guild that enabled the
+		//module and did not give it a custom prefix.
+		if (listener == null && SerpensBot.isHybridCommandMode())
+		{
+			BotListener module = SerpensBot.getModuleById(commandName);
+			
+			if (module != null && module.isEnabledOrDefault(guildID) && commandName.equals(module.getModulePrefixOrDefault(guildID)))
+				listener = module;
+		}
+		
+		return listener;
+	}
+	
+	/**
+	 * Update the index entry of the given module for the given guild. Called by the modules whenever their prefix or their
+	 * state changes.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param listener
+	 * 		The module to update.
+	 * @param modulePrefix
+	 * 		The current prefix of the module for the guild.
+	 * @param enabled
+	 * 		Whether the module is enabled for the guild.
+	 */
+	public void updateModule(String guildID, BotListener listener, String modulePrefix, boolean enabled)
+	{
+		Map<String, BotListener> commands = this.guildCommands.computeIfAbsent(guildID, k -> new ConcurrentHashMap<>());
+		
+		//Remove the old entry of the module.
+		commands.values().removeIf(module -> module == listener);
+		
+		//Disabled modules and modules without a prefix do not receive commands.
+		if (enabled && modulePrefix != null && !modulePrefix.isBlank())
+			commands.put(modulePrefix, listener);
+	}
+	
+	/**
+	 * Register a command that has the same name in every guild.
+	 *
+	 * @param commandName
+	 * 		The name of the command.
+	 * @param listener
+	 * 		The module that owns the command.
+	 */
+	public void addGlobalCommand(String commandName, BotListener listener)
+	{
+		this.globalCommands.put(commandName, listener);
+	}
+	
+	/**
+	 * @param commandName
+	 * 		The name of the command.
+	 *
+	 * @return True if a command with the given name exists in every guild, so it cannot be used as a module prefix.
+	 */
+	public boolean isGlobalCommand(String commandName)
+	{
+		if (this.globalCommands.containsKey(commandName))
+			return true;
+		
+		//In hybrid mode the default prefix of every module is a global command.
+		return SerpensBot.isHybridCommandMode() && SerpensBot.getModuleById(commandName) != null;
+	}
+	
+	/**
+	 * Remove every entry from the index.
+	 */
+	public void clear()
+	{
+		this.guildCommands.clear();
+		this.globalCommands.clear();
+	}
+}
@@ -0,0 +1,93 @@
+package com.serpenssolida.discordbot.command;
+
+/**
+ * Snapshot of the progress of the bulk command synchronization.
+ */
+public class CommandSyncProgress
+{
+	private final boolean running;
+	private final int total;
+	private final int updated;
+	private final int unchanged;
+	private final int failed;
+	private final int retries;
+	private final int inFlight;
+	private final long elapsedTime;
+	private final double throughput;
+	
+	public CommandSyncProgress(boolean running, int total, int updated, int unchanged, int failed, int retries, int inFlight, long elapsedTime)
+	{
+		this.running = running;
+		this.total = total;
+		this.updated = updated;
+		this.unchanged = unchanged;
+		this.failed = failed;
+		this.retries = retries;
+		this.inFlight = inFlight;
+		this.elapsedTime = elapsedTime;
+		this.throughput = elapsedTime > 0 ? (updated + unchanged + failed) * 1000.0 / elapsedTime : 0;
+	}
+	
+	public boolean isRunning()
+	{
+		return this.running;
+	}
+	
+	/**
+	 * @return The number of guilds submitted since the synchronization started.
+	 */
+	public int getTotal()
+	{
+		return this.total;
+	}
+	
+	/**
+	 * @return The number of guilds that received a new command list.
+	 */
+	public int getUpdated()
+	{
+		return this.updated;
+	}
+	
+	/**
+	 * @return The number of guilds whose command list was already up to date.
+	 */
+	public int getUnchanged()
+	{
+		return this.unchanged;
+	}
+	
+	/**
+	 * @return The number of guilds whose command list could not be updated.
+	 */
+	public int getFailed()
+	{
+		return this.failed;
+	}
+	
+	public int getRetries()
+	{
+		return this.retries;
+	}
+	
+	public int getInFlight()
+	{
+		return this.inFlight;
+	}
+	
+	/**
+	 * @return The time in milliseconds since the synchronization started.
+	 */
+	public long getElapsedTime()
+	{
+		return this.elapsedTime;
+	}
+	
+	/**
+	 * @return The number of guilds processed every second.
+	 */
+	public double getThroughput()
+	{
+		return this.throughput;
+	}
+}
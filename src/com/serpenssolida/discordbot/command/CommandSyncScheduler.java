@@ -0,0 +1,244 @@
+package com.serpenssolida.discordbot.command;
+
+import com.serpenssolida.discordbot.BotData;
+import com.serpenssolida.discordbot.SerpensBot;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates the command list of many guilds, used when the commands of every guild must be synchronized.
+ *
+ * <p>The per-route buckets of Discord are already respected by the JDA requester, so the scheduler limits the number
+ * of updates in flight to avoid flooding its queues, retries the failed updates with an exponential backoff and keeps
+ * track of the progress of the synchronization. Guilds whose command list did not change are skipped without any
+ * request, see {@link SerpensBot#updateGuildCommands(Guild)}.</p>
+ */
+public class CommandSyncScheduler
+{
+	private final ScheduledExecutorService executor;
+	private final Deque<Long> pendingGuilds = new ArrayDeque<>(); //Guilds waiting to be synchronized.
+	private final Set<Long> queuedGuilds = new HashSet<>(); //Guilds pending, used to skip duplicates.
+	private final Set<Long> syncingGuilds = new HashSet<>(); //Guilds whose update is in flight.
+	private final Set<Long> dirtyGuilds = new HashSet<>(); //Guilds submitted again while in flight, queued again when they finish.
+	private final Set<Long> forcedGuilds = new HashSet<>(); //Guilds whose next update sends the command list even if it did not change.
+	private CommandSyncSettings settings = new CommandSyncSettings();
+	
+	//Progress of the current synchronization, everything is guarded by this.
+	private int inFlight = 0;
+	private int total = 0;
+	private int updated = 0;
+	private int unchanged = 0;
+	private int failed = 0;
+	private int retries = 0;
+	private long startTime = 0;
+	private long endTime = 0;
+	
+	private static final Logger logger = LoggerFactory.getLogger(CommandSyncScheduler.class);
+	
+	private enum Result
+	{
+		UPDATED,
+		UNCHANGED,
+		FAILED
+	}
+	
+	public CommandSyncScheduler()
+	{
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "SerpensBot-CommandSync");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Queue the given guilds for the synchronization of their command list. Guilds that are already queued are ignored.
+	 *
+	 * @param guilds
+	 * 		The guilds to synchronize.
+	 */
+	public void submit(Collection<Guild> guilds)
+	{
+		this.submit(guilds, false);
+	}
+	
+	/**
+	 * Queue the given guilds for the synchronization of their command list. Guilds that are already queued are not
+	 * queued again, but they are forced if requested. Guilds whose update is in flight are queued again when it ends,
+	 * since their command list could have been generated before the change.
+	 *
+	 * @param guilds
+	 * 		The guilds to synchronize.
+	 * @param force
+	 * 		Whether the command list is sent also to the guilds where it did not change.
+	 */
+	public synchronized void submit(Collection<Guild> guilds, boolean force)
+	{
+		//Start a new synchronization if the previous one has ended.
+		if (!this.isRunning())
+		{
+			BotData data = SerpensBot.getBotData();
+			this.settings = data != null ? data.getCommandSync() : new CommandSyncSettings();
+			this.total = this.updated = this.unchanged = this.failed = this.retries = 0;
+			this.startTime = System.currentTimeMillis();
+			this.endTime = 0;
+		}
+		
+		for (Guild guild : guilds)
+		{
+			long guildID = guild.getIdLong();
+			
+			if (force)
+				this.forcedGuilds.add(guildID);
+			
+			if (this.syncingGuilds.contains(guildID))
+				this.dirtyGuilds.add(guildID);
+			else
+				this.enqueue(guildID);
+		}
+		
+		logger.info(SerpensBot.getMessage("command_sync_started", this.pendingGuilds.size()));
+		this.fill();
+	}
+	
+	/**
+	 * @return A snapshot of the progress of the current or last synchronization.
+	 */
+	public synchronized CommandSyncProgress getProgress()
+	{
+		long elapsedTime = this.startTime == 0 ? 0 : (this.isRunning() ? System.currentTimeMillis() : this.endTime) - this.startTime;
+		return new CommandSyncProgress(this.isRunning(), this.total, this.updated, this.unchanged, this.failed, this.retries, this.inFlight, elapsedTime);
+	}
+	
+	private boolean isRunning()
+	{
+		return this.inFlight > 0 || !this.pendingGuilds.isEmpty();
+	}
+	
+	private void enqueue(long guildID)
+	{
+		if (this.queuedGuilds.add(guildID))
+		{
+			this.pendingGuilds.add(guildID);
+			this.total++;
+		}
+	}
+	
+	/**
+	 * Start the updates of the pending guilds until the limit of updates in flight is reached.
+	 */
+	private synchronized void fill()
+	{
+		while (this.inFlight < Math.max(1, this.settings.getConcurrency()) && !this.pendingGuilds.isEmpty())
+		{
+			long guildID = this.pendingGuilds.poll();
+			boolean force = this.forcedGuilds.remove(guildID);
+			
+			this.queuedGuilds.remove(guildID);
+			this.syncingGuilds.add(guildID);
+			this.inFlight++;
+			this.executor.execute(() -> this.sync(guildID, force, 0));
+		}
+	}
+	
+	private void sync(long guildID, boolean force, int attempt)
+	{
+		Guild guild = SerpensBot.getGuildById(Long.toString(guildID));
+		
+		//The bot could have left the guild in the meantime.
+		if (guild == null)
+		{
+			this.finish(guildID, Result.FAILED);
+			return;
+		}
+		
+		CompletableFuture<Boolean> update;
+		
+		try
+		{
+			//Load the settings of a guild never seen before without updating the commands, the update is done here.
+			if (!SerpensBot.isSettingsLoaded(guild.getId()))
+				SerpensBot.loadSettings(guild.getId(), false);
+			update = SerpensBot.updateGuildCommands(guild, force);
+		}
+		catch (RuntimeException e)
+		{
+			update = CompletableFuture.failedFuture(e);
+		}
+		
+		update.whenComplete((sent, throwable) ->
+		{
+			if (throwable == null)
+			{
+				this.finish(guildID, sent ? Result.UPDATED : Result.UNCHANGED);
+			}
+			else if (attempt < this.settings.getRetries() && isRetryable(throwable))
+			{
+				this.retry(guild, force, attempt);
+			}
+			else
+			{
+				logger.error(SerpensBot.getMessage("command_sync_failed", guild.getName()));
+				this.finish(guildID, Result.FAILED);
+			}
+		});
+	}
+	
+	private synchronized void retry(Guild guild, boolean force, int attempt)
+	{
+		//Exponential backoff with jitter, so the retries of many guilds do not happen all at once.
+		long backoff = this.settings.getBackoff() << Math.min(attempt, 16);
+		long delay = backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+		
+		this.retries++;
+		logger.warn(SerpensBot.getMessage("command_sync_retry", guild.getName(), delay));
+		
+		this.executor.schedule(() -> this.sync(guild.getIdLong(), force, attempt + 1), delay, TimeUnit.MILLISECONDS);
+	}
+	
+	private synchronized void finish(long guildID, Result result)
+	{
+		switch (result)
+		{
+			case UPDATED -> this.updated++;
+			case UNCHANGED -> this.unchanged++;
+			case FAILED -> this.failed++;
+		}
+		
+		this.inFlight--;
+		this.syncingGuilds.remove(guildID);
+		
+		//The guild changed during the update, send the new command list.
+		if (this.dirtyGuilds.remove(guildID))
+			this.enqueue(guildID);
+		
+		if (!this.isRunning())
+		{
+			this.endTime = System.currentTimeMillis();
+			logger.info(SerpensBot.getMessage("command_sync_ended", this.updated, this.unchanged, this.failed, this.endTime - this.startTime));
+		}
+		
+		this.fill();
+	}
+	
+	/**
+	 * Client errors are caused by the command list itself, retrying them would fail again.
+	 */
+	private static boolean isRetryable(Throwable throwable)
+	{
+		Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+		
+		return !(cause instanceof ErrorResponseException errorResponse) || errorResponse.isServerError();
+	}
+}
@@ -0,0 +1,26 @@
+package com.serpenssolida.discordbot.command;
+
+/**
+ * Limits of the bulk command synchronization, read from the "commandSync" object of "bot.json".
+ */
+public class CommandSyncSettings
+{
+	private int concurrency = 4; //Maximum number of command updates sent at the same time.
+	private int retries = 5; //Maximum number of retries of a failed command update.
+	private long backoff = 1000; //Delay in milliseconds before the first retry, doubled at every retry.
+	
+	public int getConcurrency()
+	{
+		return this.concurrency;
+	}
+	
+	public int getRetries()
+	{
+		return this.retries;
+	}
+	
+	public long getBackoff()
+	{
+		return this.backoff;
+	}
+}
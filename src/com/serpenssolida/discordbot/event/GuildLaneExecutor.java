@@ -0,0 +1,132 @@
+package com.serpenssolida.discordbot.event;
+
+import com.serpenssolida.discordbot.SerpensBot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor that runs tasks of the same guild one after the other while tasks of different guilds run in parallel.
+ *
+ * <p>Every guild has a lane (a queue of tasks) that exists only while it has work to do: the first task submitted to an
+ * empty lane starts a drainer on the backing executor that runs the tasks in submission order and removes the lane
+ * when it is empty.</p>
+ *
+ * <p>The backing executor uses virtual threads when the runtime supports them (Java 21+), otherwise it falls back to a
+ * cached pool of daemon platform threads.</p>
+ */
+public class GuildLaneExecutor
+{
+	public static final long NO_GUILD = 0L; //Lane used by events that are not related to a guild.
+	
+	private final Map<Long, Queue<Runnable>> lanes = new ConcurrentHashMap<>();
+	private final ExecutorService executor;
+	
+	private static final Logger logger = LoggerFactory.getLogger(GuildLaneExecutor.class);
+	
+	public GuildLaneExecutor()
+	{
+		this.executor = GuildLaneExecutor.createExecutor();
+	}
+	
+	/**
+	 * Queue the given task in the lane of the given guild.
+	 *
+	 * @param guildID
+	 * 		The id of the guild, or {@link #NO_GUILD}.
+	 * @param task
+	 * 		The task to run.
+	 */
+	public void execute(long guildID, Runnable task)
+	{
+		boolean[] startDrainer = new boolean[1];
+		
+		//The lane exists only while a drainer is running on it, so creating it means starting a new drainer.
+		this.lanes.compute(guildID, (key, lane) ->
+		{
+			if (lane == null)
+			{
+				lane = new ArrayDeque<>();
+				startDrainer[0] = true;
+			}
+			
+			lane.add(task);
+			return lane;
+		});
+		
+		if (startDrainer[0])
+			this.executor.execute(() -> this.drain(guildID));
+	}
+	
+	/**
+	 * Run the tasks of the lane of the given guild until the lane is empty.
+	 */
+	private void drain(long guildID)
+	{
+		Runnable[] next = new Runnable[1];
+		
+		while (true)
+		{
+			//Take the next task and remove the lane atomically if there is nothing left to do.
+			this.lanes.computeIfPresent(guildID, (key, lane) ->
+			{
+				next[0] = lane.poll();
+				return next[0] != null ? lane : null;
+			});
+			
+			if (next[0] == null)
+				return;
+			
+			try
+			{
+				next[0].run();
+			}
+			catch (Throwable e)
+			{
+				logger.error(e.getLocalizedMessage(), e);
+			}
+		}
+	}
+	
+	/**
+	 * @return The number of guilds that have pending tasks.
+	 */
+	public int getActiveLanes()
+	{
+		return this.lanes.size();
+	}
+	
+	/**
+	 * Create the executor that will run the lanes.
+	 */
+	private static ExecutorService createExecutor()
+	{
+		try
+		{
+			//Virtual threads are available only from Java 21, look them up reflectively.
+			ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			logger.info(SerpensBot.getMessage("event_executor_virtual"));
+			
+			return executor;
+		}
+		catch (ReflectiveOperationException e)
+		{
+			logger.info(SerpensBot.getMessage("event_executor_platform"));
+			
+			AtomicInteger threadCount = new AtomicInteger();
+			return Executors.newCachedThreadPool(runnable ->
+			{
+				Thread thread = new Thread(runnable, "SerpensBot-Event-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.serpenssolida.discordbot.event;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Event manager that moves the listener callbacks off the JDA event thread.
+ *
+ * <p>Events of the same guild are handled in the order they were received, events of different guilds are handled in
+ * parallel by a {@link GuildLaneExecutor}. A handler that blocks (for example calling {@code complete()} on a rest
+ * action) only delays the events of its own guild.</p>
+ *
+ * <p>The order is kept up to the lane of a module: a module whose lane has more than one thread can run the events of
+ * the same guild in parallel.</p>
+ */
+public class GuildOrderedEventManager extends ModuleEventManager
+{
+	private final GuildLaneExecutor laneExecutor;
+	
+	public GuildOrderedEventManager(GuildLaneExecutor laneExecutor)
+	{
+		this.laneExecutor = laneExecutor;
+	}
+	
+	@Override
+	public void handle(@NotNull GenericEvent event)
+	{
+		this.laneExecutor.execute(GuildOrderedEventManager.getGuildKey(event), () -> super.handle(event));
+	}
+	
+	/**
+	 * Get the key of the lane the given event belongs to.
+	 *
+	 * @param event
+	 * 		The event.
+	 *
+	 * @return
+	 * 		The id of the guild of the event, or {@link GuildLaneExecutor#NO_GUILD} if the event is not from a guild.
+	 */
+	public static long getGuildKey(GenericEvent event)
+	{
+		Guild guild = null;
+		
+		if (event instanceof GenericGuildEvent guildEvent)
+			guild = guildEvent.getGuild();
+		else if (event instanceof GenericInteractionCreateEvent interactionEvent)
+			guild = interactionEvent.getGuild();
+		else if (event instanceof GenericMessageEvent messageEvent && messageEvent.isFromGuild())
+			guild = messageEvent.getGuild();
+		
+		return guild != null ? guild.getIdLong() : GuildLaneExecutor.NO_GUILD;
+	}
+}
@@ -0,0 +1,105 @@
+package com.serpenssolida.discordbot.event;
+
+import com.serpenssolida.discordbot.module.BotListener;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import net.dv8tion.jda.api.hooks.InterfacedEventManager;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Event manager that hands the events to the execution lane of every {@link BotListener} that has one.
+ * Listeners without a lane are called directly by the thread that is handling the event.
+ *
+ * <p>Only the events that a module handles (the ones passed to a handler overridden by the module or by
+ * {@link BotListener}) are queued in its lane, the other events (like presences and typing) are passed to the module
+ * directly, so they do not fill the queue of the lane and cause the events the module handles to be dropped.</p>
+ *
+ * <p>The manager keeps an immutable snapshot of the registered listeners, replaced when a listener is registered or
+ * removed, so handling an event does not copy the listener list.</p>
+ */
+public class ModuleEventManager extends InterfacedEventManager
+{
+	private volatile Object[] listeners = new Object[0];
+	
+	private static final Map<Class<?>, Map<Class<?>, Boolean>> handledEvents = new ConcurrentHashMap<>(); //Listener class -> (event class -> handled).
+	private static final Logger logger = LoggerFactory.getLogger(ModuleEventManager.class);
+	
+	@Override
+	public synchronized void register(@NotNull Object listener)
+	{
+		super.register(listener);
+		this.listeners = super.getRegisteredListeners().toArray();
+	}
+	
+	@Override
+	public synchronized void unregister(@NotNull Object listener)
+	{
+		super.unregister(listener);
+		this.listeners = super.getRegisteredListeners().toArray();
+	}
+	
+	@Override
+	public void handle(@NotNull GenericEvent event)
+	{
+		for (Object registeredListener : this.listeners)
+		{
+			if (registeredListener instanceof BotListener listener && listener.getLane() != null && ModuleEventManager.isHandled(listener, event))
+				listener.getLane().execute(() -> ModuleEventManager.callListener(listener, event));
+			else
+				ModuleEventManager.callListener((EventListener) registeredListener, event);
+		}
+	}
+	
+	/**
+	 * @return True if the given listener overrides a handler that receives the given event.
+	 */
+	private static boolean isHandled(Object listener, GenericEvent event)
+	{
+		return ModuleEventManager.handledEvents
+				.computeIfAbsent(listener.getClass(), k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(event.getClass(), eventClass -> ModuleEventManager.findHandler(listener.getClass(), eventClass));
+	}
+	
+	/**
+	 * Look for a method of the listener, declared below {@link ListenerAdapter}, whose name starts with "on" and whose
+	 * only parameter is an event that the given event can be passed as.
+	 */
+	private static boolean findHandler(Class<?> listenerClass, Class<?> eventClass)
+	{
+		for (Class<?> type = listenerClass; type != null && type != ListenerAdapter.class && type != Object.class; type = type.getSuperclass())
+		{
+			for (Method method : type.getDeclaredMethods())
+			{
+				if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1 || !method.getName().startsWith("on"))
+					continue;
+				
+				Class<?> parameterType = method.getParameterTypes()[0];
+				
+				if (GenericEvent.class.isAssignableFrom(parameterType) && parameterType.isAssignableFrom(eventClass))
+					return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static void callListener(EventListener listener, GenericEvent event)
+	{
+		try
+		{
+			listener.onEvent(event);
+		}
+		catch (Throwable e)
+		{
+			logger.error(e.getLocalizedMessage(), e);
+		}
+	}
+}
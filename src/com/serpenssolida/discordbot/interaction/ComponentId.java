@@ -0,0 +1,175 @@
+package com.serpenssolida.discordbot.interaction;
+
+import com.serpenssolida.discordbot.SerpensBot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Component id that contains the module and the callback that handle the component, used to route the interactions
+ * without keeping any state for the message.
+ *
+ * <p>The id is encoded as {@code sb1:<module>:<callback>[:<arg>...]}, where {@code sb1} is the version of the
+ * encoding. The characters {@code %} and {@code :} inside the fields are escaped as {@code %25} and {@code %3A}.
+ * Since the whole state of the component is inside its id, the components keep working after the bot restarts.</p>
+ */
+public final class ComponentId
+{
+	private final String moduleID;
+	private final String callbackName;
+	private final List<String> args;
+	
+	public static final String PREFIX = "sb1:";
+	public static final int MAX_LENGTH = 100; //Maximum length of a component id allowed by Discord.
+	
+	private ComponentId(String moduleID, String callbackName, List<String> args)
+	{
+		this.moduleID = moduleID;
+		this.callbackName = callbackName;
+		this.args = args;
+	}
+	
+	/**
+	 * Encode a component id.
+	 *
+	 * @param moduleID
+	 * 		The internal id of the module that handles the component.
+	 * @param callbackName
+	 * 		The name of the callback that handles the component.
+	 * @param args
+	 * 		The arguments passed to the callback.
+	 *
+	 * @return
+	 * 		The encoded component id.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if the encoded id is longer than {@link #MAX_LENGTH}.
+	 */
+	public static String encode(String moduleID, String callbackName, String... args)
+	{
+		StringBuilder builder = new StringBuilder(PREFIX);
+		builder.append(escape(moduleID)).append(':').append(escape(callbackName));
+		
+		for (String arg : args)
+			builder.append(':').append(escape(arg));
+		
+		if (builder.length() > MAX_LENGTH)
+			throw new IllegalArgumentException(SerpensBot.getMessage("componentid_too_long", MAX_LENGTH, builder));
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Decode a component id.
+	 *
+	 * @param componentId
+	 * 		The id of the component.
+	 *
+	 * @return
+	 * 		The decoded id, or null if the id was not created by {@link #encode(String, String, String...)}.
+	 */
+	public static ComponentId decode(String componentId)
+	{
+		if (!isEncoded(componentId))
+			return null;
+		
+		List<String> fields = new ArrayList<>();
+		int start = PREFIX.length();
+		
+		//Split the fields on the unescaped separators, the escaped ones never contain ':'.
+		for (int i = start; i <= componentId.length(); i++)
+		{
+			if (i == componentId.length() || componentId.charAt(i) == ':')
+			{
+				String field = unescape(componentId.substring(start, i));
+				
+				if (field == null)
+					return null;
+				
+				fields.add(field);
+				start = i + 1;
+			}
+		}
+		
+		if (fields.size() < 2)
+			return null;
+		
+		return new ComponentId(fields.get(0), fields.get(1), List.copyOf(fields.subList(2, fields.size())));
+	}
+	
+	/**
+	 * @param componentId
+	 * 		The id of the component.
+	 *
+	 * @return Whether the id was created by {@link #encode(String, String, String...)}.
+	 */
+	public static boolean isEncoded(String componentId)
+	{
+		return componentId != null && componentId.startsWith(PREFIX);
+	}
+	
+	private static String escape(String field)
+	{
+		return field.replace("%", "%25").replace(":", "%3A");
+	}
+	
+	private static String unescape(String field)
+	{
+		if (field.indexOf('%') < 0)
+			return field;
+		
+		StringBuilder builder = new StringBuilder(field.length());
+		
+		for (int i = 0; i < field.length(); i++)
+		{
+			char c = field.charAt(i);
+			
+			if (c != '%')
+			{
+				builder.append(c);
+				continue;
+			}
+			
+			//Only the escape sequences created by encode are valid.
+			if (field.startsWith("%25", i))
+				builder.append('%');
+			else if (field.startsWith("%3A", i))
+				builder.append(':');
+			else
+				return null;
+			
+			i += 2;
+		}
+		
+		return builder.toString();
+	}
+	
+	public String getModuleID()
+	{
+		return this.moduleID;
+	}
+	
+	public String getCallbackName()
+	{
+		return this.callbackName;
+	}
+	
+	/**
+	 * @return The arguments encoded in the id.
+	 */
+	public List<String> getArgs()
+	{
+		return this.args;
+	}
+	
+	/**
+	 * @param index
+	 * 		The index of the argument.
+	 *
+	 * @return The argument at the given index, or null if there is no argument at the given index.
+	 */
+	public String getArg(int index)
+	{
+		return index >= 0 && index < this.args.size() ? this.args.get(index) : null;
+	}
+}
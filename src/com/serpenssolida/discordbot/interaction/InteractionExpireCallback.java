@@ -0,0 +1,20 @@
+package com.serpenssolida.discordbot.interaction;
+
+/**
+ * Called when an {@link InteractionGroup} expires, for example to disable the components of its message.
+ */
+public interface InteractionExpireCallback
+{
+	/**
+	 * Called when the interaction group expires. It runs on the timer thread, so it must not block (use
+	 * {@code queue()} instead of {@code complete()}).
+	 *
+	 * @param guildID
+	 * 		The id of the guild of the message.
+	 * @param messageID
+	 * 		The id of the message the group was linked to.
+	 * @param interactionGroup
+	 * 		The expired group.
+	 */
+	void onExpire(String guildID, String messageID, InteractionGroup interactionGroup);
+}
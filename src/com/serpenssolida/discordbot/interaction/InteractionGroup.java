@@ -12,6 +12,8 @@ import java.util.HashMap;
 public class InteractionGroup
 {
 	private HashMap<String, InteractionCallback> components = new HashMap<>();
+	private long timeToLive = 0; //Milliseconds after which the group is unregistered, 0 if the group never expires.
+	private InteractionExpireCallback expireCallback; //Called when the group expires.
 	
 	private void addComponentCallback(InteractionCallback interaction)
 	{
@@ -77,4 +79,37 @@ public class InteractionGroup
 	{
 		this.components.clear();
 	}
+	
+	/**
+	 * Set the time after which the group will be unregistered from the message it is linked to. Must be set before
+	 * registering the group.
+	 *
+	 * @param timeToLive
+	 * 		Time to live in milliseconds, 0 if the group never expires.
+	 */
+	public void setTimeToLive(long timeToLive)
+	{
+		this.timeToLive = Math.max(0, timeToLive);
+	}
+	
+	public long getTimeToLive()
+	{
+		return this.timeToLive;
+	}
+	
+	/**
+	 * Set the callback called when the group expires.
+	 *
+	 * @param expireCallback
+	 * 		The callback, or null.
+	 */
+	public void setExpireCallback(InteractionExpireCallback expireCallback)
+	{
+		this.expireCallback = expireCallback;
+	}
+	
+	public InteractionExpireCallback getExpireCallback()
+	{
+		return this.expireCallback;
+	}
 }
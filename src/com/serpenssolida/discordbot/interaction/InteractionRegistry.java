@@ -0,0 +1,157 @@
+package com.serpenssolida.discordbot.interaction;
+
+import com.serpenssolida.discordbot.HashedWheelTimer;
+import com.serpenssolida.discordbot.SerpensBot;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link InteractionGroup}s of a module, linked to the messages they belong to.
+ *
+ * <p>Groups that have a time to live are removed when it expires, the expiration is handled by the
+ * {@link HashedWheelTimer} of the bot. The number of groups alive in all the registries is available as a gauge with
+ * {@link #getLiveGroupCount()}.</p>
+ */
+public class InteractionRegistry
+{
+	private final Map<String, Map<String, Entry>> groups = new ConcurrentHashMap<>(); //Guild id -> (message id -> group).
+	
+	private static final AtomicInteger liveGroups = new AtomicInteger();
+	
+	/**
+	 * A registered group and its pending expiration.
+	 */
+	private static final class Entry
+	{
+		private final String guildID;
+		private final String messageID;
+		private final InteractionGroup group;
+		private volatile HashedWheelTimer.Timeout timeout;
+		
+		private Entry(String guildID, String messageID, InteractionGroup group)
+		{
+			this.guildID = guildID;
+			this.messageID = messageID;
+			this.group = group;
+		}
+	}
+	
+	/**
+	 * Link the given group to the given message, replacing the group already linked to it.
+	 *
+	 * @param guildID
+	 * 		The id of the guild of the message.
+	 * @param messageID
+	 * 		The id of the message.
+	 * @param interactionGroup
+	 * 		The group to link.
+	 */
+	public void add(String guildID, String messageID, InteractionGroup interactionGroup)
+	{
+		Map<String, Entry> guildGroups = this.groups.computeIfAbsent(guildID, k -> new ConcurrentHashMap<>());
+		Entry entry = new Entry(guildID, messageID, interactionGroup);
+		
+		liveGroups.incrementAndGet();
+		this.release(guildGroups.put(messageID, entry), false);
+		
+		//Schedule the expiration of the group, the timeout removes only this entry.
+		if (interactionGroup.getTimeToLive() > 0)
+			entry.timeout = SerpensBot.getTimer().schedule(() -> this.expire(entry), interactionGroup.getTimeToLive(), TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @param guildID
+	 * 		The id of the guild of the message.
+	 * @param messageID
+	 * 		The id of the message.
+	 *
+	 * @return The group linked to the given message, or null if there is none.
+	 */
+	public InteractionGroup get(String guildID, String messageID)
+	{
+		Map<String, Entry> guildGroups = this.groups.get(guildID);
+		Entry entry = guildGroups != null ? guildGroups.get(messageID) : null;
+		
+		return entry != null ? entry.group : null;
+	}
+	
+	/**
+	 * Unlink the group linked to the given message.
+	 *
+	 * @param guildID
+	 * 		The id of the guild of the message.
+	 * @param messageID
+	 * 		The id of the message.
+	 *
+	 * @return The removed group, or null if there was none.
+	 */
+	public InteractionGroup remove(String guildID, String messageID)
+	{
+		Map<String, Entry> guildGroups = this.groups.get(guildID);
+		Entry entry = guildGroups != null ? guildGroups.remove(messageID) : null;
+		
+		this.release(entry, false);
+		
+		return entry != null ? entry.group : null;
+	}
+	
+	/**
+	 * Unlink every group, without calling the expire callbacks.
+	 */
+	public void clear()
+	{
+		for (Map<String, Entry> guildGroups : this.groups.values())
+			guildGroups.values().forEach(entry -> this.release(entry, false));
+		
+		this.groups.clear();
+	}
+	
+	/**
+	 * @return The number of groups in this registry.
+	 */
+	public int size()
+	{
+		return this.groups.values().stream().mapToInt(Map::size).sum();
+	}
+	
+	/**
+	 * @return The number of groups alive in all the registries.
+	 */
+	public static int getLiveGroupCount()
+	{
+		return liveGroups.get();
+	}
+	
+	private void expire(Entry entry)
+	{
+		Map<String, Entry> guildGroups = this.groups.get(entry.guildID);
+		
+		//The group could have been removed or replaced in the meantime.
+		if (guildGroups == null || !guildGroups.remove(entry.messageID, entry))
+			return;
+		
+		this.release(entry, true);
+	}
+	
+	/**
+	 * Release a removed entry, calling the expire callback of its group if the entry expired.
+	 */
+	private void release(Entry entry, boolean expired)
+	{
+		if (entry == null)
+			return;
+		
+		liveGroups.decrementAndGet();
+		
+		HashedWheelTimer.Timeout timeout = entry.timeout;
+		if (timeout != null)
+			timeout.cancel();
+		
+		InteractionExpireCallback callback = entry.group.getExpireCallback();
+		if (expired && callback != null)
+			callback.onExpire(entry.guildID, entry.messageID, entry.group);
+	}
+}
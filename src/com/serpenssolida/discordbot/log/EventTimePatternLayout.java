@@ -0,0 +1,44 @@
+package com.serpenssolida.discordbot.log;
+
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Pattern layout that prints the time at which an event happened instead of the time at which it was logged.
+ *
+ * <p>Events written some time after they happened (like the ones queued by the logger module) put the time in
+ * milliseconds in the {@value #EVENT_TIME_KEY} MDC entry, the other events are formatted with their own time. The
+ * layout is configured like a {@link PatternLayout}:</p>
+ *
+ * <pre>
+ * log4j.appender.FILE.layout = com.serpenssolida.discordbot.log.EventTimePatternLayout
+ * log4j.appender.FILE.layout.conversionPattern = [%d{yyyy-MM-dd HH:mm:ss}][%-5p][%-30c{1}]: %m%n
+ * </pre>
+ */
+public class EventTimePatternLayout extends PatternLayout
+{
+	public static final String EVENT_TIME_KEY = "eventTime";
+	
+	@Override
+	public String format(LoggingEvent event)
+	{
+		Object eventTime = event.getMDC(EventTimePatternLayout.EVENT_TIME_KEY);
+		
+		if (eventTime == null)
+			return super.format(event);
+		
+		long time;
+		
+		try
+		{
+			time = Long.parseLong(eventTime.toString());
+		}
+		catch (NumberFormatException e)
+		{
+			return super.format(event);
+		}
+		
+		LoggingEvent timedEvent = new LoggingEvent(event.getFQNOfLoggerClass(), event.getLogger(), time, event.getLevel(), event.getMessage(), event.getThreadName(), event.getThrowableInformation(), event.getNDC(), null, event.getProperties());
+		return super.format(timedEvent);
+	}
+}
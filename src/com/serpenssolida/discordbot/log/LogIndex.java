@@ -0,0 +1,488 @@
+package com.serpenssolida.discordbot.log;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sparse index of a log file.
+ *
+ * <p>The file is split in blocks of about {@link #BLOCK_SIZE} bytes that start at the beginning of an event. For every
+ * block the index keeps the time of its oldest and newest event, a mask of the levels of its events, a bloom filter of
+ * their tags and the exact set of their guilds, so a search reads only the blocks that can contain a matching event.
+ * The tags are few, while a block can hold events of hundreds of guilds, which would saturate a small bloom filter. An
+ * event is a line that starts with the date written by the log layout, followed by the lines without date (like stack
+ * traces).</p>
+ *
+ * <p>The index of a rotated file is saved next to it with the ".idx" extension, the index of the file that is still
+ * being written is kept in memory and extended with the new complete blocks.</p>
+ */
+public final class LogIndex
+{
+	private final List<Block> blocks = new ArrayList<>();
+	private long indexedBytes; //Bytes of the file covered by the blocks.
+	private long sourceSize; //Size of the file when it was indexed.
+	private long sourceModified; //Last modified time of the file when it was indexed.
+	
+	static final int BLOCK_SIZE = 64 * 1024;
+	private static final int BLOOM_WORDS = 8; //Bits of the bloom filter of the tags of a block, in longs.
+	private static final int BLOOM_HASHES = 3;
+	private static final int MAGIC = 0x53424C49; //"SBLI"
+	private static final int VERSION = 2;
+	private static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL"};
+	private static final ZoneId zone = ZoneId.systemDefault();
+	
+	/**
+	 * Part of the log file described by the index.
+	 */
+	static final class Block
+	{
+		private final long offset;
+		private int length;
+		private long minTime = Long.MAX_VALUE;
+		private long maxTime = Long.MIN_VALUE;
+		private int levelMask;
+		private final long[] bloom = new long[LogIndex.BLOOM_WORDS];
+		private long[] guilds = new long[0]; //Sorted keys of the guilds of the events, see guildKey.
+		private Set<Long> pendingGuilds = new HashSet<>(); //Keys of the guilds collected while the block is being built.
+		
+		private Block(long offset)
+		{
+			this.offset = offset;
+		}
+		
+		/**
+		 * Stop adding events to the block and store its guilds.
+		 */
+		private void close()
+		{
+			this.guilds = this.pendingGuilds.stream().mapToLong(Long::longValue).sorted().toArray();
+			this.pendingGuilds = null;
+		}
+		
+		long getOffset()
+		{
+			return this.offset;
+		}
+		
+		int getLength()
+		{
+			return this.length;
+		}
+		
+		private void add(Header header)
+		{
+			this.minTime = Math.min(this.minTime, header.time);
+			this.maxTime = Math.max(this.maxTime, header.time);
+			this.levelMask |= header.levelBit;
+			
+			if (header.tag != null)
+				LogIndex.addToBloom(this.bloom, "t:" + header.tag);
+			
+			if (header.guild != null)
+				this.pendingGuilds.add(LogIndex.guildKey(header.guild));
+		}
+		
+		/**
+		 * @return False if no event of the block matches the given query.
+		 */
+		boolean mayMatch(LogQuery query)
+		{
+			if (this.maxTime < query.getFrom() || this.minTime > query.getTo())
+				return false;
+			
+			if (query.getLevelMask() != 0 && (this.levelMask & query.getLevelMask()) == 0)
+				return false;
+			
+			if (query.getTag() != null && !LogIndex.bloomContains(this.bloom, "t:" + query.getTag()))
+				return false;
+			
+			return query.getGuild() == null || Arrays.binarySearch(this.guilds, LogIndex.guildKey(query.getGuild())) >= 0;
+		}
+	}
+	
+	/**
+	 * Date, level, tag and guild of the first line of an event.
+	 */
+	static final class Header
+	{
+		private final long time;
+		private final int levelBit;
+		private final String tag;
+		private final String guild;
+		
+		private Header(long time, int levelBit, String tag, String guild)
+		{
+			this.time = time;
+			this.levelBit = levelBit;
+			this.tag = tag;
+			this.guild = guild;
+		}
+		
+		/**
+		 * @return True if the event matches the given query, the text of the event is checked separately.
+		 */
+		boolean matches(LogQuery query)
+		{
+			if (this.time < query.getFrom() || this.time > query.getTo())
+				return false;
+			
+			if (query.getLevelMask() != 0 && (this.levelBit & query.getLevelMask()) == 0)
+				return false;
+			
+			if (query.getTag() != null && !query.getTag().equals(this.tag))
+				return false;
+			
+			return query.getGuild() == null || query.getGuild().equals(this.guild);
+		}
+	}
+	
+	/**
+	 * Index the events of the given file written after the indexed bytes.
+	 *
+	 * @param file
+	 * 		The log file.
+	 * @param complete
+	 * 		True if nothing will be written to the file anymore, so its last block can be closed. The last block of a file
+	 * 		still being written is left out of the index until it is full.
+	 */
+	void update(Path file, boolean complete) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			long offset = this.indexedBytes;
+			Block block = null;
+			
+			InputStream input = new BufferedInputStream(Channels.newInputStream(channel.position(offset)), LogIndex.BLOCK_SIZE);
+			ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+			
+			while (offset < size)
+			{
+				//The last line of a complete file can miss the line terminator.
+				if (!LogIndex.readLine(input, line) && (!complete || line.size() == 0))
+					break;
+				
+				Header header = LogIndex.parseHeader(line.toString(StandardCharsets.UTF_8));
+				
+				//A full block is closed before the next event.
+				if (header != null && block != null && block.length >= LogIndex.BLOCK_SIZE)
+				{
+					block.close();
+					this.blocks.add(block);
+					this.indexedBytes = block.offset + block.length;
+					block = null;
+				}
+				
+				if (block == null)
+					block = new Block(offset);
+				
+				if (header != null)
+					block.add(header);
+				
+				block.length += line.size();
+				offset += line.size();
+			}
+			
+			if (complete && block != null)
+			{
+				block.close();
+				this.blocks.add(block);
+				this.indexedBytes = block.offset + block.length;
+			}
+			
+			this.sourceSize = size;
+			this.sourceModified = Files.getLastModifiedTime(file).toMillis();
+		}
+	}
+	
+	/**
+	 * @return The blocks that can contain events matching the given query.
+	 */
+	List<Block> findBlocks(LogQuery query)
+	{
+		List<Block> result = new ArrayList<>();
+		
+		for (Block block : this.blocks)
+		{
+			if (block.mayMatch(query))
+				result.add(block);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return The number of blocks of the index.
+	 */
+	int getBlockCount()
+	{
+		return this.blocks.size();
+	}
+	
+	/**
+	 * @return The bytes of the file covered by the index, the events after them must be read without index.
+	 */
+	long getIndexedBytes()
+	{
+		return this.indexedBytes;
+	}
+	
+	/**
+	 * @return True if the given file changed since it was indexed.
+	 */
+	boolean isStale(Path file) throws IOException
+	{
+		return Files.size(file) != this.sourceSize || Files.getLastModifiedTime(file).toMillis() != this.sourceModified;
+	}
+	
+	/**
+	 * Write the index to the given file.
+	 */
+	void save(Path indexFile) throws IOException
+	{
+		Path temporaryFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile))))
+		{
+			output.writeInt(LogIndex.MAGIC);
+			output.writeInt(LogIndex.VERSION);
+			output.writeLong(this.sourceSize);
+			output.writeLong(this.sourceModified);
+			output.writeLong(this.indexedBytes);
+			output.writeInt(this.blocks.size());
+			
+			for (Block block : this.blocks)
+			{
+				output.writeLong(block.offset);
+				output.writeInt(block.length);
+				output.writeLong(block.minTime);
+				output.writeLong(block.maxTime);
+				output.writeInt(block.levelMask);
+				
+				for (long word : block.bloom)
+					output.writeLong(word);
+				
+				output.writeInt(block.guilds.length);
+				
+				for (long guild : block.guilds)
+					output.writeLong(guild);
+			}
+		}
+		
+		Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Read the index saved in the given file.
+	 *
+	 * @return
+	 * 		The index, or null if the file is not a valid index.
+	 */
+	static LogIndex load(Path indexFile) throws IOException
+	{
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile))))
+		{
+			if (input.readInt() != LogIndex.MAGIC || input.readInt() != LogIndex.VERSION)
+				return null;
+			
+			LogIndex index = new LogIndex();
+			index.sourceSize = input.readLong();
+			index.sourceModified = input.readLong();
+			index.indexedBytes = input.readLong();
+			int blockCount = input.readInt();
+			
+			for (int i = 0; i < blockCount; i++)
+			{
+				Block block = new Block(input.readLong());
+				block.length = input.readInt();
+				block.minTime = input.readLong();
+				block.maxTime = input.readLong();
+				block.levelMask = input.readInt();
+				
+				for (int j = 0; j < block.bloom.length; j++)
+					block.bloom[j] = input.readLong();
+				
+				block.guilds = new long[input.readInt()];
+				block.pendingGuilds = null;
+				
+				for (int j = 0; j < block.guilds.length; j++)
+					block.guilds[j] = input.readLong();
+				
+				index.blocks.add(block);
+			}
+			
+			return index;
+		}
+		catch (EOFException e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Read a line, including its line terminator, into the given buffer.
+	 *
+	 * @return
+	 * 		False if there is no complete line left.
+	 */
+	static boolean readLine(InputStream input, ByteArrayOutputStream line) throws IOException
+	{
+		line.reset();
+		int value;
+		
+		while ((value = input.read()) != -1)
+		{
+			line.write(value);
+			
+			if (value == '\n')
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Parse the first line of an event, written with the pattern "[yyyy-MM-dd HH:mm:ss][LEVEL][logger]: message". The
+	 * tag and the guild id are the first two bracketed words of the message, like the lines of the logger module.
+	 *
+	 * @return
+	 * 		The header of the event, or null if the line does not start an event.
+	 */
+	static Header parseHeader(String line)
+	{
+		if (line.length() < 23 || line.charAt(0) != '[' || line.charAt(20) != ']' || line.charAt(21) != '[')
+			return null;
+		
+		long time;
+		
+		try
+		{
+			LocalDateTime dateTime = LocalDateTime.of(
+					Integer.parseInt(line, 1, 5, 10),
+					Integer.parseInt(line, 6, 8, 10),
+					Integer.parseInt(line, 9, 11, 10),
+					Integer.parseInt(line, 12, 14, 10),
+					Integer.parseInt(line, 15, 17, 10),
+					Integer.parseInt(line, 18, 20, 10));
+			
+			time = dateTime.atZone(LogIndex.zone).toEpochSecond();
+		}
+		catch (RuntimeException e)
+		{
+			return null;
+		}
+		
+		int levelEnd = line.indexOf(']', 22);
+		
+		if (levelEnd < 0)
+			return null;
+		
+		int levelBit = LogIndex.getLevelBit(line.substring(22, levelEnd).trim());
+		
+		//The message starts after the name of the logger.
+		int messageStart = line.indexOf("]: ", levelEnd + 1);
+		String tag = null;
+		String guild = null;
+		
+		if (messageStart >= 0)
+		{
+			int tagStart = messageStart + 3;
+			int tagEnd = tagStart < line.length() && line.charAt(tagStart) == '[' ? line.indexOf(']', tagStart) : -1;
+			
+			if (tagEnd > 0)
+			{
+				tag = line.substring(tagStart + 1, tagEnd);
+				int guildEnd = tagEnd + 1 < line.length() && line.charAt(tagEnd + 1) == '[' ? line.indexOf(']', tagEnd + 1) : -1;
+				
+				if (guildEnd > 0)
+					guild = line.substring(tagEnd + 2, guildEnd);
+			}
+		}
+		
+		return new Header(time, levelBit, tag, guild);
+	}
+	
+	/**
+	 * @return The bit of the given level in the level masks, 0 if the level is not known.
+	 */
+	static int getLevelBit(String level)
+	{
+		for (int i = 0; i < LogIndex.LEVELS.length; i++)
+		{
+			if (LogIndex.LEVELS[i].equals(level))
+				return 1 << i;
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * @return The key of a guild in the guild sets of the blocks: the id itself, or a 64 bit hash of values that are not
+	 * ids, like the guild names written by older versions.
+	 */
+	private static long guildKey(String guild)
+	{
+		boolean numeric = !guild.isEmpty() && guild.length() <= 19;
+		
+		for (int i = 0; numeric && i < guild.length(); i++)
+			numeric = guild.charAt(i) >= '0' && guild.charAt(i) <= '9';
+		
+		if (numeric && (guild.length() < 19 || guild.compareTo("9223372036854775807") <= 0))
+			return Long.parseLong(guild);
+		
+		//FNV-1a, with the sign bit set so it never equals an id.
+		long hash = 0xCBF29CE484222325L;
+		
+		for (int i = 0; i < guild.length(); i++)
+		{
+			hash ^= guild.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+		
+		return hash | Long.MIN_VALUE;
+	}
+	
+	private static void addToBloom(long[] bloom, String key)
+	{
+		int hash = key.hashCode();
+		int step = Integer.rotateLeft(hash * 0x9E3779B9, 16) | 1;
+		int bits = bloom.length * Long.SIZE;
+		
+		for (int i = 0; i < LogIndex.BLOOM_HASHES; i++)
+		{
+			int bit = Math.floorMod(hash + i * step, bits);
+			bloom[bit >>> 6] |= 1L << (bit & 63);
+		}
+	}
+	
+	private static boolean bloomContains(long[] bloom, String key)
+	{
+		int hash = key.hashCode();
+		int step = Integer.rotateLeft(hash * 0x9E3779B9, 16) | 1;
+		int bits = bloom.length * Long.SIZE;
+		
+		for (int i = 0; i < LogIndex.BLOOM_HASHES; i++)
+		{
+			int bit = Math.floorMod(hash + i * step, bits);
+			
+			if ((bloom[bit >>> 6] & (1L << (bit & 63))) == 0)
+				return false;
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,99 @@
+package com.serpenssolida.discordbot.log;
+
+import java.util.Locale;
+
+/**
+ * Filters of a log search. Every filter that is not set matches every event.
+ */
+public class LogQuery
+{
+	private long from = Long.MIN_VALUE; //Epoch second of the oldest event.
+	private long to = Long.MAX_VALUE; //Epoch second of the newest event.
+	private int levelMask = 0; //Levels of the events, 0 for every level.
+	private String tag; //Tag of the events, like "INTERACTION" in "[INTERACTION][guild id]...".
+	private String guild; //Id of the guild of the events.
+	private String text; //Text contained in the events, case insensitive.
+	private int limit = 1000; //Maximum number of events returned, the newest ones.
+	
+	public long getFrom()
+	{
+		return this.from;
+	}
+	
+	public void setFrom(long from)
+	{
+		this.from = from;
+	}
+	
+	public long getTo()
+	{
+		return this.to;
+	}
+	
+	public void setTo(long to)
+	{
+		this.to = to;
+	}
+	
+	public int getLevelMask()
+	{
+		return this.levelMask;
+	}
+	
+	/**
+	 * Add a level to the levels of the events.
+	 *
+	 * @param level
+	 * 		The name of the level, like "INFO".
+	 *
+	 * @return
+	 * 		False if the level is not known.
+	 */
+	public boolean addLevel(String level)
+	{
+		int bit = LogIndex.getLevelBit(level.trim().toUpperCase(Locale.ROOT));
+		this.levelMask |= bit;
+		
+		return bit != 0;
+	}
+	
+	public String getTag()
+	{
+		return this.tag;
+	}
+	
+	public void setTag(String tag)
+	{
+		this.tag = tag;
+	}
+	
+	public String getGuild()
+	{
+		return this.guild;
+	}
+	
+	public void setGuild(String guild)
+	{
+		this.guild = guild;
+	}
+	
+	public String getText()
+	{
+		return this.text;
+	}
+	
+	public void setText(String text)
+	{
+		this.text = text != null ? text.toLowerCase(Locale.ROOT) : null;
+	}
+	
+	public int getLimit()
+	{
+		return this.limit;
+	}
+	
+	public void setLimit(int limit)
+	{
+		this.limit = limit;
+	}
+}
@@ -0,0 +1,161 @@
+package com.serpenssolida.discordbot.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring buffer of the last formatted log events.
+ *
+ * <p>Every event gets a sequence number, which is also its position in the ring: a reader that remembers the sequence of
+ * the next event to read finds it with a single lookup. When the ring is full the oldest events are overwritten, a
+ * reader that is too far behind finds out with {@link #getOldestSequence()} and must read the older events from disk.</p>
+ *
+ * <p>The buffer does not depend on the logging framework: it is filled by the {@link RingBufferAppender} and installed
+ * with {@link #install(LogRingBuffer)} when the appender is configured.</p>
+ */
+public final class LogRingBuffer
+{
+	private final AtomicReferenceArray<Entry> entries;
+	private final int mask;
+	private final AtomicLong nextSequence = new AtomicLong();
+	
+	private static volatile LogRingBuffer installed;
+	
+	/**
+	 * A formatted log event.
+	 */
+	public static final class Entry
+	{
+		private final long sequence;
+		private final long timestamp;
+		private final String text;
+		
+		private Entry(long sequence, long timestamp, String text)
+		{
+			this.sequence = sequence;
+			this.timestamp = timestamp;
+			this.text = text;
+		}
+		
+		public long getSequence()
+		{
+			return this.sequence;
+		}
+		
+		public long getTimestamp()
+		{
+			return this.timestamp;
+		}
+		
+		/**
+		 * @return The event formatted by the layout of the appender, it can span more lines.
+		 */
+		public String getText()
+		{
+			return this.text;
+		}
+	}
+	
+	/**
+	 * @param capacity
+	 * 		The number of events kept by the buffer, rounded up to a power of two.
+	 */
+	public LogRingBuffer(int capacity)
+	{
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		
+		this.entries = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+	
+	/**
+	 * Add an event to the buffer, overwriting the oldest one if the buffer is full.
+	 *
+	 * @param timestamp
+	 * 		The time of the event in milliseconds.
+	 * @param text
+	 * 		The formatted event.
+	 *
+	 * @return
+	 * 		The sequence number of the event.
+	 */
+	public long append(long timestamp, String text)
+	{
+		long sequence = this.nextSequence.getAndIncrement();
+		this.entries.set((int) (sequence & this.mask), new Entry(sequence, timestamp, text));
+		
+		return sequence;
+	}
+	
+	/**
+	 * Read the events starting from the given sequence number. The read stops at the first event that has been
+	 * reserved but not written yet, so the next read continues from it.
+	 *
+	 * @param fromSequence
+	 * 		The sequence number of the first event to read.
+	 * @param maxEntries
+	 * 		The maximum number of events to read.
+	 *
+	 * @return
+	 * 		The events read, in order. Events overwritten while reading are left out.
+	 */
+	public List<Entry> read(long fromSequence, int maxEntries)
+	{
+		long next = this.nextSequence.get();
+		long sequence = Math.max(fromSequence, this.getOldestSequence());
+		List<Entry> result = new ArrayList<>((int) Math.min(Math.max(0, next - sequence), maxEntries));
+		
+		for (; sequence < next && result.size() < maxEntries; sequence++)
+		{
+			Entry entry = this.entries.get((int) (sequence & this.mask));
+			
+			//The event has been reserved but not written yet.
+			if (entry == null || entry.sequence < sequence)
+				break;
+			
+			if (entry.sequence == sequence)
+				result.add(entry);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return The sequence number that the next event will get.
+	 */
+	public long getNextSequence()
+	{
+		return this.nextSequence.get();
+	}
+	
+	/**
+	 * @return The sequence number of the oldest event still in the buffer.
+	 */
+	public long getOldestSequence()
+	{
+		return Math.max(0, this.nextSequence.get() - this.entries.length());
+	}
+	
+	public int getCapacity()
+	{
+		return this.entries.length();
+	}
+	
+	/**
+	 * Set the buffer that serves the log to the web server.
+	 */
+	public static void install(LogRingBuffer buffer)
+	{
+		LogRingBuffer.installed = buffer;
+	}
+	
+	/**
+	 * @return The buffer filled by the {@link RingBufferAppender}, or null if the appender is not configured.
+	 */
+	public static LogRingBuffer getInstalled()
+	{
+		return LogRingBuffer.installed;
+	}
+}
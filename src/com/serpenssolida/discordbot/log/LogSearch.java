@@ -0,0 +1,296 @@
+package com.serpenssolida.discordbot.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Searches the events of a log file and of its rotated copies.
+ *
+ * <p>Every file is described by a {@link LogIndex}, so a search reads only the files and the blocks that can contain a
+ * matching event instead of the whole history. The indexes of the rotated files are built once and saved next to them,
+ * the index of the file that is still being written is kept in memory and extended at every search. The part of that
+ * file written after its last complete block is always read.</p>
+ */
+public class LogSearch
+{
+	private final Path directory;
+	private final String baseName;
+	private final Map<Path, CachedIndex> indexes = new HashMap<>(); //Log file -> index of the file.
+	
+	private static final String INDEX_EXTENSION = ".idx";
+	private static final Logger logger = LoggerFactory.getLogger(LogSearch.class);
+	
+	/**
+	 * Events found by a search.
+	 */
+	private static final class Matches
+	{
+		private final List<String> lines = new ArrayList<>();
+		private int events;
+	}
+	
+	/**
+	 * Index of a file and the identity of the file it was built from.
+	 */
+	private static final class CachedIndex
+	{
+		private final LogIndex index;
+		private final Object fileKey;
+		
+		private CachedIndex(LogIndex index, Object fileKey)
+		{
+			this.index = index;
+			this.fileKey = fileKey;
+		}
+	}
+	
+	/**
+	 * @param directory
+	 * 		The directory of the log files.
+	 * @param baseName
+	 * 		The name of the file being written, the rotated files have the same name followed by a suffix.
+	 */
+	public LogSearch(Path directory, String baseName)
+	{
+		this.directory = directory;
+		this.baseName = baseName;
+	}
+	
+	/**
+	 * Find the newest events that match the given query. The files and their blocks are read from the newest, so a
+	 * search that reaches the limit of the query stops without reading the older history.
+	 *
+	 * @param query
+	 * 		The filters of the events.
+	 *
+	 * @return
+	 * 		The lines of the events found and the number of blocks read.
+	 */
+	public synchronized LogSearchResult search(LogQuery query) throws IOException
+	{
+		List<Path> files = this.listFiles();
+		Matches matches = new Matches();
+		int scannedBlocks = 0;
+		int totalBlocks = 0;
+		boolean truncated = false;
+		
+		//Forget the indexes of the files that have been deleted or renamed.
+		this.indexes.keySet().retainAll(files);
+		
+		for (int i = files.size() - 1; i >= 0 && !truncated; i--)
+		{
+			Path file = files.get(i);
+			boolean active = file.getFileName().toString().equals(this.baseName);
+			LogIndex index = active ? this.getActiveIndex(file) : this.getRotatedIndex(file);
+			List<LogIndex.Block> blocks = index.findBlocks(query);
+			totalBlocks += index.getBlockCount();
+			
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+			{
+				//The events after the last indexed block are the newest of the file and are read without index.
+				long tailLength = channel.size() - index.getIndexedBytes();
+				
+				if (tailLength > 0)
+					truncated = LogSearch.scan(channel, index.getIndexedBytes(), tailLength, query, matches);
+				
+				for (int j = blocks.size() - 1; j >= 0 && !truncated; j--)
+				{
+					LogIndex.Block block = blocks.get(j);
+					scannedBlocks++;
+					
+					truncated = LogSearch.scan(channel, block.getOffset(), block.getLength(), query, matches);
+				}
+			}
+		}
+		
+		return new LogSearchResult(matches.lines, scannedBlocks, totalBlocks, truncated);
+	}
+	
+	/**
+	 * @return The log files, the rotated files first from the oldest and the file being written last.
+	 */
+	private List<Path> listFiles() throws IOException
+	{
+		List<Path> files = new ArrayList<>();
+		Path activeFile = this.directory.resolve(this.baseName);
+		
+		if (!Files.isDirectory(this.directory))
+			return files;
+		
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, this.baseName + ".*"))
+		{
+			for (Path file : stream)
+			{
+				String name = file.getFileName().toString();
+				
+				if (Files.isRegularFile(file) && !name.endsWith(LogSearch.INDEX_EXTENSION) && !name.endsWith(".tmp"))
+					files.add(file);
+			}
+		}
+		
+		files.sort(Comparator.comparing(LogSearch::getLastModified));
+		
+		if (Files.isRegularFile(activeFile))
+			files.add(activeFile);
+		
+		return files;
+	}
+	
+	/**
+	 * Get the index of a rotated file, loading it from the disk or building it if it is missing or outdated.
+	 */
+	private LogIndex getRotatedIndex(Path file) throws IOException
+	{
+		CachedIndex cached = this.indexes.get(file);
+		
+		if (cached != null && !cached.index.isStale(file))
+			return cached.index;
+		
+		Path indexFile = file.resolveSibling(file.getFileName() + LogSearch.INDEX_EXTENSION);
+		LogIndex index = Files.isRegularFile(indexFile) ? LogIndex.load(indexFile) : null;
+		
+		if (index == null || index.isStale(file))
+		{
+			index = new LogIndex();
+			index.update(file, true);
+			
+			try
+			{
+				index.save(indexFile);
+			}
+			catch (IOException e)
+			{
+				//The index is still used from memory.
+				logger.warn("Impossibile salvare l'indice del log " + indexFile + ": " + e.getLocalizedMessage());
+			}
+		}
+		
+		this.indexes.put(file, new CachedIndex(index, null));
+		return index;
+	}
+	
+	/**
+	 * Get the index of the file being written, extended with the blocks completed since the previous search. The index
+	 * is rebuilt if the file has been replaced or truncated.
+	 */
+	private LogIndex getActiveIndex(Path file) throws IOException
+	{
+		Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+		CachedIndex cached = this.indexes.get(file);
+		
+		if (cached == null || !Objects.equals(cached.fileKey, fileKey) || Files.size(file) < cached.index.getIndexedBytes())
+		{
+			cached = new CachedIndex(new LogIndex(), fileKey);
+			this.indexes.put(file, cached);
+		}
+		
+		cached.index.update(file, false);
+		return cached.index;
+	}
+	
+	/**
+	 * Read the events of a part of a file and add the ones matching the query to the given matches, newest first.
+	 *
+	 * @return
+	 * 		True if the limit of events of the query has been reached.
+	 */
+	private static boolean scan(FileChannel channel, long offset, long length, LogQuery query, Matches matches) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, Integer.MAX_VALUE - 8));
+		
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, offset + buffer.position()) < 0)
+				break;
+		}
+		
+		//Only complete lines are read, the last one can still be written.
+		String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+		int end = text.lastIndexOf('\n');
+		
+		if (end < 0)
+			return false;
+		
+		List<String> event = new ArrayList<>();
+		List<List<String>> found = new ArrayList<>();
+		LogIndex.Header header = null;
+		
+		for (String line : text.substring(0, end).split("\r?\n", -1))
+		{
+			LogIndex.Header lineHeader = LogIndex.parseHeader(line);
+			
+			//The lines without date belong to the previous event.
+			if (lineHeader == null)
+			{
+				if (header != null)
+					event.add(line);
+				
+				continue;
+			}
+			
+			if (header != null && LogSearch.isMatch(header, event, query))
+				found.add(event);
+			
+			header = lineHeader;
+			event = new ArrayList<>();
+			event.add(line);
+		}
+		
+		if (header != null && LogSearch.isMatch(header, event, query))
+			found.add(event);
+		
+		//The events of the part are found oldest first.
+		for (int i = found.size() - 1; i >= 0; i--)
+		{
+			matches.lines.addAll(found.get(i));
+			matches.events++;
+			
+			if (matches.events >= query.getLimit())
+				return true;
+		}
+		
+		return false;
+	}
+	
+	private static boolean isMatch(LogIndex.Header header, List<String> event, LogQuery query)
+	{
+		return header.matches(query) && LogSearch.containsText(event, query.getText());
+	}
+	
+	private static boolean containsText(List<String> event, String text)
+	{
+		if (text == null || text.isEmpty())
+			return true;
+		
+		for (String line : event)
+		{
+			if (line.toLowerCase(Locale.ROOT).contains(text))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	private static long getLastModified(Path file)
+	{
+		try
+		{
+			return Files.getLastModifiedTime(file).toMillis();
+		}
+		catch (IOException e)
+		{
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.serpenssolida.discordbot.log;
+
+import java.util.List;
+
+/**
+ * Events found by a {@link LogSearch}.
+ */
+public class LogSearchResult
+{
+	private final List<String> lines;
+	private final int scannedBlocks;
+	private final int totalBlocks;
+	private final boolean truncated;
+	
+	LogSearchResult(List<String> lines, int scannedBlocks, int totalBlocks, boolean truncated)
+	{
+		this.lines = lines;
+		this.scannedBlocks = scannedBlocks;
+		this.totalBlocks = totalBlocks;
+		this.truncated = truncated;
+	}
+	
+	/**
+	 * @return The lines of the events found, newest event first.
+	 */
+	public List<String> getLines()
+	{
+		return this.lines;
+	}
+	
+	/**
+	 * @return The number of indexed blocks that were read.
+	 */
+	public int getScannedBlocks()
+	{
+		return this.scannedBlocks;
+	}
+	
+	/**
+	 * @return The number of indexed blocks of the searched files.
+	 */
+	public int getTotalBlocks()
+	{
+		return this.totalBlocks;
+	}
+	
+	/**
+	 * @return True if the search stopped because the limit of events was reached.
+	 */
+	public boolean isTruncated()
+	{
+		return this.truncated;
+	}
+}
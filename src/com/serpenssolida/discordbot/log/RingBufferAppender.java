@@ -0,0 +1,72 @@
+package com.serpenssolida.discordbot.log;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Layout;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Log4j appender that keeps the last events in a {@link LogRingBuffer}, so the web server can serve the recent log
+ * without reading the log file.
+ *
+ * <p>The events are formatted by the layout of the appender when they are logged. The number of events kept is set
+ * with the "Capacity" option:</p>
+ *
+ * <pre>
+ * log4j.appender.RING = com.serpenssolida.discordbot.log.RingBufferAppender
+ * log4j.appender.RING.Capacity = 8192
+ * log4j.appender.RING.layout = org.apache.log4j.PatternLayout
+ * </pre>
+ */
+public class RingBufferAppender extends AppenderSkeleton
+{
+	private int capacity = 8192;
+	private LogRingBuffer buffer;
+	
+	public int getCapacity()
+	{
+		return this.capacity;
+	}
+	
+	public void setCapacity(int capacity)
+	{
+		this.capacity = capacity;
+	}
+	
+	@Override
+	public void activateOptions()
+	{
+		this.buffer = new LogRingBuffer(this.capacity);
+		LogRingBuffer.install(this.buffer);
+	}
+	
+	@Override
+	protected void append(LoggingEvent event)
+	{
+		if (this.buffer == null || this.layout == null)
+			return;
+		
+		StringBuilder text = new StringBuilder(this.layout.format(event));
+		String[] throwableLines = event.getThrowableStrRep();
+		
+		//Add the stack trace if the layout does not print it.
+		if (this.layout.ignoresThrowable() && throwableLines != null)
+		{
+			for (String line : throwableLines)
+				text.append(line).append(Layout.LINE_SEP);
+		}
+		
+		this.buffer.append(event.getTimeStamp(), text.toString());
+	}
+	
+	@Override
+	public void close()
+	{
+		this.closed = true;
+	}
+	
+	@Override
+	public boolean requiresLayout()
+	{
+		return true;
+	}
+}
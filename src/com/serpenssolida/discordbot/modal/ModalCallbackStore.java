@@ -0,0 +1,254 @@
+package com.serpenssolida.discordbot.modal;
+
+import com.serpenssolida.discordbot.BotData;
+import com.serpenssolida.discordbot.HashedWheelTimer;
+import com.serpenssolida.discordbot.SerpensBot;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The pending {@link ModalCallback}s of a module, one for every user of a guild.
+ *
+ * <p>Callbacks expire after the time to live set in the bot data, and every guild holds at most the number of callbacks
+ * set in the bot data, evicting the oldest one when it is full. The callbacks of a guild are kept in insertion order,
+ * that is also their expiration order, so the expired callbacks are always at the head and are removed by every
+ * access to the guild in amortized O(1). Every callback is also removed by the {@link HashedWheelTimer} of the bot when
+ * it expires, so the callbacks of a guild that is no longer used do not stay in memory, and the map of a guild is
+ * dropped when its last callback is removed.</p>
+ */
+public class ModalCallbackStore
+{
+	private final Map<String, LinkedHashMap<String, Entry>> callbacks = new ConcurrentHashMap<>(); //Guild id -> (user id -> callback).
+	
+	private static final AtomicLong completedModals = new AtomicLong();
+	private static final AtomicLong expiredModals = new AtomicLong();
+	private static final AtomicLong evictedModals = new AtomicLong();
+	
+	private static final long DEFAULT_TIME_TO_LIVE = 900000;
+	private static final int DEFAULT_MAX_PER_GUILD = 1000;
+	
+	private static final class Entry
+	{
+		private final String guildID;
+		private final String userID;
+		private final ModalCallback callback;
+		private final long expireTime;
+		private volatile HashedWheelTimer.Timeout timeout;
+		
+		private Entry(String guildID, String userID, ModalCallback callback, long expireTime)
+		{
+			this.guildID = guildID;
+			this.userID = userID;
+			this.callback = callback;
+			this.expireTime = expireTime;
+		}
+	}
+	
+	/**
+	 * Register the callback of the modal shown to the given user, replacing the previous one.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param userID
+	 * 		The id of the user the modal was shown to.
+	 * @param modalCallback
+	 * 		The callback called when the modal is submitted.
+	 */
+	public void add(String guildID, String userID, ModalCallback modalCallback)
+	{
+		BotData data = SerpensBot.getBotData();
+		long timeToLive = data != null ? data.getModalTimeToLive() : DEFAULT_TIME_TO_LIVE;
+		int maxPerGuild = data != null ? data.getModalsPerGuild() : DEFAULT_MAX_PER_GUILD;
+		long now = System.currentTimeMillis();
+		Entry entry = new Entry(guildID, userID, modalCallback, now + timeToLive);
+		
+		while (true)
+		{
+			LinkedHashMap<String, Entry> guildCallbacks = this.callbacks.computeIfAbsent(guildID, k -> new LinkedHashMap<>());
+			
+			synchronized (guildCallbacks)
+			{
+				//The map has been dropped after its last callback was removed, get the new one.
+				if (this.callbacks.get(guildID) != guildCallbacks)
+					continue;
+				
+				removeExpired(guildCallbacks, now);
+				
+				//Remove the old callback first so the new one goes to the tail.
+				release(guildCallbacks.remove(userID));
+				guildCallbacks.put(userID, entry);
+				
+				//Evict the oldest callbacks if the guild is full.
+				Iterator<Entry> iterator = guildCallbacks.values().iterator();
+				
+				while (guildCallbacks.size() > Math.max(1, maxPerGuild) && iterator.hasNext())
+				{
+					release(iterator.next());
+					iterator.remove();
+					evictedModals.incrementAndGet();
+				}
+				
+				entry.timeout = SerpensBot.getTimer().schedule(() -> this.expire(entry), timeToLive, TimeUnit.MILLISECONDS);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param userID
+	 * 		The id of the user the modal was shown to.
+	 *
+	 * @return The callback of the modal shown to the given user, or null if there is none or it expired.
+	 */
+	public ModalCallback get(String guildID, String userID)
+	{
+		LinkedHashMap<String, Entry> guildCallbacks = this.callbacks.get(guildID);
+		
+		if (guildCallbacks == null)
+			return null;
+		
+		synchronized (guildCallbacks)
+		{
+			removeExpired(guildCallbacks, System.currentTimeMillis());
+			this.dropIfEmpty(guildID, guildCallbacks);
+			Entry entry = guildCallbacks.get(userID);
+			
+			return entry != null ? entry.callback : null;
+		}
+	}
+	
+	/**
+	 * Remove the callback of the given user after its modal has been submitted.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param userID
+	 * 		The id of the user the modal was shown to.
+	 */
+	public void complete(String guildID, String userID)
+	{
+		if (this.remove(guildID, userID))
+			completedModals.incrementAndGet();
+	}
+	
+	/**
+	 * Remove the callback of the given user.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param userID
+	 * 		The id of the user the modal was shown to.
+	 *
+	 * @return True if a callback was removed.
+	 */
+	public boolean remove(String guildID, String userID)
+	{
+		LinkedHashMap<String, Entry> guildCallbacks = this.callbacks.get(guildID);
+		
+		if (guildCallbacks == null)
+			return false;
+		
+		synchronized (guildCallbacks)
+		{
+			removeExpired(guildCallbacks, System.currentTimeMillis());
+			
+			Entry entry = guildCallbacks.remove(userID);
+			release(entry);
+			this.dropIfEmpty(guildID, guildCallbacks);
+			
+			return entry != null;
+		}
+	}
+	
+	/**
+	 * @return The number of modals submitted since the start.
+	 */
+	public static long getCompletedCount()
+	{
+		return completedModals.get();
+	}
+	
+	/**
+	 * @return The number of modals that expired before being submitted since the start.
+	 */
+	public static long getExpiredCount()
+	{
+		return expiredModals.get();
+	}
+	
+	/**
+	 * @return The number of modals evicted because their guild was full since the start.
+	 */
+	public static long getEvictedCount()
+	{
+		return evictedModals.get();
+	}
+	
+	/**
+	 * Remove the given callback when its time to live ends, if it has not been removed or replaced in the meantime.
+	 */
+	private void expire(Entry entry)
+	{
+		LinkedHashMap<String, Entry> guildCallbacks = this.callbacks.get(entry.guildID);
+		
+		if (guildCallbacks == null)
+			return;
+		
+		synchronized (guildCallbacks)
+		{
+			if (guildCallbacks.remove(entry.userID, entry))
+				expiredModals.incrementAndGet();
+			
+			this.dropIfEmpty(entry.guildID, guildCallbacks);
+		}
+	}
+	
+	/**
+	 * Drop the map of a guild that has no callbacks. Must be called while holding its lock.
+	 */
+	private void dropIfEmpty(String guildID, LinkedHashMap<String, Entry> guildCallbacks)
+	{
+		if (guildCallbacks.isEmpty())
+			this.callbacks.remove(guildID, guildCallbacks);
+	}
+	
+	/**
+	 * Cancel the expiration of a removed callback.
+	 */
+	private static void release(Entry entry)
+	{
+		if (entry == null)
+			return;
+		
+		HashedWheelTimer.Timeout timeout = entry.timeout;
+		if (timeout != null)
+			timeout.cancel();
+	}
+	
+	/**
+	 * Remove the expired callbacks from the head of the given guild map. Must be called while holding its lock.
+	 */
+	private static void removeExpired(LinkedHashMap<String, Entry> guildCallbacks, long now)
+	{
+		Iterator<Entry> iterator = guildCallbacks.values().iterator();
+		
+		while (iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			
+			if (entry.expireTime > now)
+				break;
+			
+			release(entry);
+			iterator.remove();
+			expiredModals.incrementAndGet();
+		}
+	}
+}
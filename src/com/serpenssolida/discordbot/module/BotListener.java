@@ -1,14 +1,20 @@
 package com.serpenssolida.discordbot.module;
 
+import com.serpenssolida.discordbot.MemberCache;
 import com.serpenssolida.discordbot.MessageUtils;
 import com.serpenssolida.discordbot.SerpensBot;
 import com.serpenssolida.discordbot.command.BotCommand;
+import com.serpenssolida.discordbot.command.CommandDispatcher;
 import com.serpenssolida.discordbot.contextmenu.MessageContextMenuOption;
 import com.serpenssolida.discordbot.contextmenu.UserContextMenuOption;
+import com.serpenssolida.discordbot.interaction.ComponentId;
+import com.serpenssolida.discordbot.interaction.InteractionAction;
 import com.serpenssolida.discordbot.interaction.InteractionCallback;
 import com.serpenssolida.discordbot.interaction.InteractionGroup;
+import com.serpenssolida.discordbot.interaction.InteractionRegistry;
 import com.serpenssolida.discordbot.interaction.WrongInteractionEventException;
 import com.serpenssolida.discordbot.modal.ModalCallback;
+import com.serpenssolida.discordbot.modal.ModalCallbackStore;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.User;
@@ -23,6 +29,8 @@ import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 import net.dv8tion.jda.internal.interactions.CommandDataImpl;
@@ -31,18 +39,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BotListener extends ListenerAdapter
 {
 	private String internalID = ""; //Internal id used for retrieving listeners from the list.
 	private String moduleName = ""; //Readable name of the module.
-	private final HashMap<String, String> modulePrefix = new HashMap<>(); //Prefix of the module, used for commands.
-	private final HashMap<String, Boolean> enabled = new HashMap<>(); //Whether the module is enabled or not.
+	private int ordinal = -1; //Index of the module inside the registry, used to store its prefix and state inside the GuildState.
 	private final LinkedHashMap<String, BotCommand> botCommands = new LinkedHashMap<>(); //List of commands of the module that are displayed in the client command list.
 	private final LinkedHashMap<String, MessageContextMenuOption> messageContextMenuOption = new LinkedHashMap<>(); //List of commands of the module that are displayed in the client command list.
 	private final LinkedHashMap<String, UserContextMenuOption> userContextMenuOption = new LinkedHashMap<>(); //List of commands of the module that are displayed in the client command list.
-	private final HashMap<String, HashMap<String, InteractionGroup>> activeGlobalInteractions = new HashMap<>();
-	private final HashMap<String, HashMap<String, ModalCallback>> activeModalCallbacks = new HashMap<>();
+	private final Map<String, CachedCommands> commandCache = BotListener.createCommandCache(); //Generated command list by prefix, shared by every guild using the prefix.
+	private volatile int commandsVersion; //Changed every time the commands of the module can change, invalidates the cached command lists.
+	private volatile List<CommandData> contextMenuCache; //Generated context menu list, null if it must be generated again.
+	private final Map<String, InteractionCallback> statelessCallbacks = new ConcurrentHashMap<>(); //Callbacks of the components that have their state in their id, by name.
+	private final InteractionRegistry activeGlobalInteractions = new InteractionRegistry(); //Interaction groups linked to the messages sent by the module.
+	private final ModalCallbackStore activeModalCallbacks = new ModalCallbackStore(); //Callbacks of the modals shown to the users.
+	private ModuleLane lane; //Execution lane of the module, null if the handlers run on the thread that received the event.
+	private final Set<MemberCache> memberCache = EnumSet.noneOf(MemberCache.class); //Members the module needs in the cache.
+	private final Set<GatewayIntent> intents = EnumSet.noneOf(GatewayIntent.class); //Gateway intents of the events the module handles.
+	private final Set<CacheFlag> cacheFlags = EnumSet.noneOf(CacheFlag.class); //Caches the module reads.
 	
 	private static final Logger logger = LoggerFactory.getLogger(BotListener.class);
 	
@@ -57,17 +73,18 @@ public class BotListener extends ListenerAdapter
 		this.addBotCommand(command);
 	}
 
-	@Override
-	public void onSlashCommandInteraction(SlashCommandInteractionEvent event)
+	/**
+	 * Run the command of this module requested by the given event. Called by the {@link CommandDispatcher} when the
+	 * name of the event matches the prefix of this module. This replaces the handling of the commands in
+	 * {@link #onSlashCommandInteraction(SlashCommandInteractionEvent)}, which receives every slash command and does
+	 * not run the commands of the module anymore: code that wrapped the commands of the module there must override
+	 * this method instead.
+	 *
+	 * @param event
+	 * 		The event that requested the command.
+	 */
+	public void handleSlashCommand(SlashCommandInteractionEvent event)
 	{
-		Guild guild = event.getGuild();
-		
-		if (guild == null)
-			return;
-		
-		if (!event.getName().equals(this.getModulePrefix(guild.getId())))
-			return;
-		
 		try
 		{
 			//Get the command from the list using the event command name and run it.
@@ -96,6 +113,10 @@ public class BotListener extends ListenerAdapter
 		if (guild == null)
 			return;
 		
+		//Components with an encoded id are routed by the CommandDispatcher.
+		if (ComponentId.isEncoded(componendId))
+			return;
+		
 		//Ignore bot reaction.
 		if (SerpensBot.getApi().getSelfUser().getId().equals(author.getId()))
 			return;
@@ -107,19 +128,55 @@ public class BotListener extends ListenerAdapter
 		if (interactionGroup == null)
 			return;
 		
+		InteractionCallback interactionCallback = interactionGroup.getComponentCallback(componendId);
+		
+		if (interactionCallback == null)
+			return;
+		
+		//Remove the group if its message has been deleted.
+		if (this.runComponentCallback(event, interactionCallback))
+			this.removeInteractionGroup(guild.getId(), event.getMessageId());
+	}
+	
+	/**
+	 * Run the stateless callback of this module requested by the given event. Called by the {@link CommandDispatcher}
+	 * when the id of the component was created by {@link #createComponentId(String, String...)}.
+	 *
+	 * @param event
+	 * 		The event of the component.
+	 * @param componentId
+	 * 		The decoded id of the component.
+	 */
+	public void handleStatelessInteraction(GenericComponentInteractionCreateEvent event, ComponentId componentId)
+	{
+		//Ignore bot reaction.
+		if (SerpensBot.getApi().getSelfUser().getId().equals(event.getUser().getId()))
+			return;
+		
+		InteractionCallback interactionCallback = this.statelessCallbacks.get(componentId.getCallbackName());
+		
+		if (interactionCallback != null)
+			this.runComponentCallback(event, interactionCallback);
+	}
+	
+	/**
+	 * Run the given callback, deleting the message of the component if requested by the callback.
+	 *
+	 * @return
+	 * 		Whether the message of the component has been deleted.
+	 */
+	private boolean runComponentCallback(GenericComponentInteractionCreateEvent event, InteractionCallback interactionCallback)
+	{
 		try
 		{
-			InteractionCallback interactionCallback = interactionGroup.getComponentCallback(componendId);
-			
 			//Do interaction action.
 			boolean deleteMessage = interactionCallback.doAction(event);
 			
 			//Delete message that has the clicked button if it should be deleted.
 			if (deleteMessage)
-			{
-				this.removeInteractionGroup(guild.getId(), event.getMessageId());
 				event.getHook().deleteOriginal().queue();
-			}
+			
+			return deleteMessage;
 		}
 		catch (WrongInteractionEventException e)
 		{
@@ -143,6 +200,8 @@ public class BotListener extends ListenerAdapter
 			//Log the error.
 			logger.error(e.getLocalizedMessage(), e);
 		}
+		
+		return false;
 	}
 	
 	@Override
@@ -166,7 +225,7 @@ public class BotListener extends ListenerAdapter
 		{
 			//Execute modal action.
 			modalCallback.doAction(event, guild, channel, author);
-			this.removeModalCallback(guild.getId(), author.getId());
+			this.activeModalCallbacks.complete(guild.getId(), author.getId());
 		}
 		catch (PermissionException e)
 		{
@@ -223,6 +282,23 @@ public class BotListener extends ListenerAdapter
 		}
 	}
 	
+	private static final int COMMAND_CACHE_SIZE = 64; //Maximum number of prefixes whose command list is cached.
+	
+	/**
+	 * Command list generated for a prefix and the version of the commands of the module it was generated from.
+	 */
+	private static final class CachedCommands
+	{
+		private final int version;
+		private final List<CommandData> commandList;
+		
+		private CachedCommands(int version, List<CommandData> commandList)
+		{
+			this.version = version;
+			this.commandList = commandList;
+		}
+	}
+	
 	/**
 	 * Generate a list of commands for the given guild.
 	 *
@@ -234,20 +310,80 @@ public class BotListener extends ListenerAdapter
 	 */
 	public List<CommandData> generateCommands(Guild guild)
 	{
-		ArrayList<CommandData> commandList = new ArrayList<>();
+		return new ArrayList<>(this.generateCommands(this.getModulePrefix(guild.getId())));
+	}
+	
+	/**
+	 * Generate the list of commands registered globally when the bot uses the "hybrid" command mode. By default these
+	 * are the commands of the module with the default prefix.
+	 *
+	 * @return
+	 * 		An ArrayList of commands.
+	 */
+	public List<CommandData> generateGlobalCommands()
+	{
+		return new ArrayList<>(this.generateCommands(this.getInternalID()));
+	}
+	
+	/**
+	 * Generate the list of commands registered in the given guild when the bot uses the "hybrid" command mode. By default
+	 * these are the commands of the module if the guild changed its prefix, the global commands are used otherwise.
+	 *
+	 * @param guild
+	 * 		The guild.
+	 *
+	 * @return
+	 * 		An ArrayList of commands.
+	 */
+	public List<CommandData> generateGuildOverrides(Guild guild)
+	{
+		if (this.getModulePrefix(guild.getId()).equals(this.getInternalID()))
+			return new ArrayList<>();
+		
+		return this.generateCommands(guild);
+	}
+	
+	/**
+	 * Generate the main command of the module with the given prefix. The list is cached, so every guild using the same
+	 * prefix shares the same command data until the commands of the module change. The cache keeps the most recently used
+	 * prefixes, and an entry is generated again if the commands have changed since, see {@link #getBotCommands()}.
+	 */
+	private List<CommandData> generateCommands(String modulePrefix)
+	{
+		int version = this.commandsVersion;
+		CachedCommands cached = this.commandCache.get(modulePrefix);
 		
-		if (this.getModulePrefix(guild.getId()).isEmpty())
-			return commandList;
+		if (cached != null && cached.version == version)
+			return cached.commandList;
 		
-		CommandDataImpl mainCommand = new CommandDataImpl(this.getModulePrefix(guild.getId()), "Main module command");
+		List<CommandData> commandList = List.of();
 		
-		for (BotCommand botCommand : this.botCommands.values())
-			mainCommand.addSubcommands(botCommand.getCommandData());
+		if (!modulePrefix.isEmpty())
+		{
+			CommandDataImpl mainCommand = new CommandDataImpl(modulePrefix, "Main module command");
+			
+			for (BotCommand botCommand : this.botCommands.values())
+				mainCommand.addSubcommands(botCommand.getCommandData());
+			
+			commandList = List.of(mainCommand);
+		}
 		
-		commandList.add(mainCommand);
+		this.commandCache.put(modulePrefix, new CachedCommands(version, commandList));
 		return commandList;
 	}
 	
+	private static Map<String, CachedCommands> createCommandCache()
+	{
+		return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedCommands> eldest)
+			{
+				return this.size() > BotListener.COMMAND_CACHE_SIZE;
+			}
+		});
+	}
+	
 	/**
 	 * Generate a list of context menus.
 	 *
@@ -256,14 +392,20 @@ public class BotListener extends ListenerAdapter
 	 */
 	public List<CommandData> generateContextMenuOptions()
 	{
-		ArrayList<CommandData> commandList = new ArrayList<>();
+		List<CommandData> commandList = this.contextMenuCache;
+		
+		if (commandList != null)
+			return new ArrayList<>(commandList);
+		
+		commandList = new ArrayList<>();
 		
 		for (UserContextMenuOption option : this.userContextMenuOption.values())
 			commandList.add(option.getContextMenu());
 		
 		for (MessageContextMenuOption option : this.messageContextMenuOption.values())
 			commandList.add(option.getContextMenu());
-
+		
+		this.contextMenuCache = List.copyOf(commandList);
 		return commandList;
 	}
 	
@@ -317,7 +459,9 @@ public class BotListener extends ListenerAdapter
 	 */
 	public void setModulePrefix(String guildID, String modulePrefix)
 	{
-		this.modulePrefix.put(guildID, modulePrefix);
+		GuildState state = this.getGuildState(guildID);
+		state.setPrefix(this.requireOrdinal(), modulePrefix);
+		this.updateDispatcher(guildID, state);
 	}
 	
 	/**
@@ -331,15 +475,18 @@ public class BotListener extends ListenerAdapter
 	 */
 	public String getModulePrefix(String guildID)
 	{
-		if (!this.modulePrefix.containsKey(guildID))
+		GuildState state = this.findGuildState(guildID);
+		String prefix = state != null ? state.getPrefix(this.requireOrdinal()) : null;
+		
+		if (prefix == null)
 		{
 			SerpensBot.loadSettings(guildID); //Try loading the settings.
 			
 			//Put the default value if no key was loaded from file.
-			this.modulePrefix.putIfAbsent(guildID, this.internalID);
+			return this.getModulePrefixOrDefault(guildID);
 		}
 		
-		return this.modulePrefix.get(guildID);
+		return prefix;
 	}
 	
 	/**
@@ -354,10 +501,18 @@ public class BotListener extends ListenerAdapter
 	 */
 	public String getModulePrefixOrDefault(String guildID)
 	{
+		GuildState state = this.getGuildState(guildID);
+		String prefix = state.getPrefix(this.requireOrdinal());
+		
 		//Put the default value if no key was loaded from file.
-		this.modulePrefix.putIfAbsent(guildID, this.internalID);
+		if (prefix == null)
+		{
+			prefix = this.internalID;
+			state.setPrefix(this.requireOrdinal(), prefix);
+			this.updateDispatcher(guildID, state);
+		}
 		
-		return this.modulePrefix.get(guildID);
+		return prefix;
 	}
 	
 	/**
@@ -370,16 +525,15 @@ public class BotListener extends ListenerAdapter
 	 */
 	public void setEnabled(String guildID, boolean enabled)
 	{
-		if (!this.modulePrefix.containsKey(guildID))
-		{
+		GuildState state = this.findGuildState(guildID);
+		
+		if (state == null || state.getPrefix(this.requireOrdinal()) == null)
 			SerpensBot.loadSettings(guildID); //Try loading the settings.
-			
-			//Put the default value if no key was loaded from file.
-			this.enabled.putIfAbsent(guildID, true);
-		}
 		
 		//Enable/disable the module.
-		this.enabled.put(guildID, enabled);
+		state = this.getGuildState(guildID);
+		state.setEnabled(this.requireOrdinal(), enabled);
+		this.updateDispatcher(guildID, state);
 	}
 	
 	/**
@@ -393,15 +547,12 @@ public class BotListener extends ListenerAdapter
 	 */
 	public boolean isEnabled(String guildID)
 	{
-		if (!this.enabled.containsKey(guildID))
-		{
+		GuildState state = this.findGuildState(guildID);
+		
+		if (state == null || !state.hasState(this.requireOrdinal()))
 			SerpensBot.loadSettings(guildID); //Try loading the settings.
-			
-			//Put the default value if no key was loaded from file.
-			this.enabled.putIfAbsent(guildID, true);
-		}
 		
-		return this.enabled.get(guildID);
+		return this.isEnabledOrDefault(guildID);
 	}
 	
 	/**
@@ -416,10 +567,66 @@ public class BotListener extends ListenerAdapter
 	 */
 	public boolean isEnabledOrDefault(String guildID)
 	{
+		GuildState state = this.getGuildState(guildID);
+		
 		//Put the default value if no key was loaded from file.
-		this.enabled.putIfAbsent(guildID, true);
+		if (!state.hasState(this.requireOrdinal()))
+			state.setEnabled(this.requireOrdinal(), true);
 		
-		return this.enabled.get(guildID);
+		return state.isEnabled(this.requireOrdinal());
+	}
+	
+	/**
+	 * Update the entry of this module inside the {@link CommandDispatcher} index for the given guild.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param state
+	 * 		The state of the guild.
+	 */
+	private void updateDispatcher(String guildID, GuildState state)
+	{
+		SerpensBot.getCommandDispatcher().updateModule(guildID, this, state.getPrefix(this.requireOrdinal()), state.isEnabled(this.requireOrdinal()));
+	}
+	
+	/**
+	 * @return The state of the given guild, or null if the guild has no state yet.
+	 */
+	private GuildState findGuildState(String guildID)
+	{
+		return SerpensBot.getGuildStates().get(Long.parseLong(guildID));
+	}
+	
+	/**
+	 * @return The state of the given guild, created if the guild has no state yet.
+	 */
+	private GuildState getGuildState(String guildID)
+	{
+		return SerpensBot.getGuildStates().getOrCreate(Long.parseLong(guildID), SerpensBot.getModules().size());
+	}
+	
+	/**
+	 * @return The ordinal of the module, the module must be registered.
+	 */
+	private int requireOrdinal()
+	{
+		if (this.ordinal < 0)
+			throw new IllegalStateException(SerpensBot.getMessage("botlistener_not_registered", this.internalID));
+		
+		return this.ordinal;
+	}
+	
+	/**
+	 * @return The index of the module inside the {@link ModuleRegistry}, -1 if the module is not registered.
+	 */
+	public int getOrdinal()
+	{
+		return this.ordinal;
+	}
+	
+	void setOrdinal(int ordinal)
+	{
+		this.ordinal = ordinal;
 	}
 	
 	public String getInternalID()
@@ -430,12 +637,31 @@ public class BotListener extends ListenerAdapter
 	public void addBotCommand(BotCommand command)
 	{
 		if (command != null)
+		{
 			this.botCommands.put(command.getId(), command);
+			this.invalidateCommands();
+		}
 	}
 	
 	public void removeBotCommand(String id)
 	{
 		this.botCommands.remove(id);
+		this.invalidateCommands();
+	}
+	
+	/**
+	 * Remove every command of the module.
+	 */
+	public void clearBotCommands()
+	{
+		this.botCommands.clear();
+		this.invalidateCommands();
+	}
+	
+	private void invalidateCommands()
+	{
+		this.commandsVersion++;
+		this.commandCache.clear();
 	}
 	
 	public BotCommand getBotCommand(String id)
@@ -446,13 +672,16 @@ public class BotListener extends ListenerAdapter
 	public void addMessageContextMenuOption(MessageContextMenuOption messageContextMenuOption)
 	{
 		if (messageContextMenuOption != null)
+		{
 			this.messageContextMenuOption.put(messageContextMenuOption.getId(), messageContextMenuOption);
-		
+			this.contextMenuCache = null;
+		}
 	}
 	
 	public void removeMessageContextMenuOption(String id)
 	{
 		this.messageContextMenuOption.remove(id);
+		this.contextMenuCache = null;
 	}
 	
 	public MessageContextMenuOption getMessageContextMenuOption(String id)
@@ -463,13 +692,16 @@ public class BotListener extends ListenerAdapter
 	public void addUserContextMenuOption(UserContextMenuOption userContextMenuOption)
 	{
 		if (userContextMenuOption != null)
+		{
 			this.userContextMenuOption.put(userContextMenuOption.getId(), userContextMenuOption);
-		
+			this.contextMenuCache = null;
+		}
 	}
 	
 	public void removeUserContextMenuOption(String id)
 	{
 		this.userContextMenuOption.remove(id);
+		this.contextMenuCache = null;
 	}
 	
 	public UserContextMenuOption getUserContextMenuOption(String id)
@@ -479,30 +711,97 @@ public class BotListener extends ListenerAdapter
 	
 	public void addInteractionGroup(String guildID, String messageID, InteractionGroup interactionGroup)
 	{
-		HashMap<String, InteractionGroup> guildInteractionGroup = this.activeGlobalInteractions.computeIfAbsent(guildID, k -> new HashMap<>());
-		guildInteractionGroup.put(messageID, interactionGroup);
+		if (interactionGroup == null)
+			return;
+		
+		this.activeGlobalInteractions.add(guildID, messageID, interactionGroup);
 	}
 	
 	public InteractionGroup getInteractionGroup(String guildID, String messageID)
 	{
-		HashMap<String, InteractionGroup> guildInteractionGroup = this.activeGlobalInteractions.computeIfAbsent(guildID, k -> new HashMap<>());
-		return guildInteractionGroup.get(messageID);
+		return this.activeGlobalInteractions.get(guildID, messageID);
 	}
 	
 	public void removeInteractionGroup(String guildID, String messageID)
 	{
-		HashMap<String, InteractionGroup> guildInteractionGroup = this.activeGlobalInteractions.computeIfAbsent(guildID, k -> new HashMap<>());
-		guildInteractionGroup.remove(messageID);
+		this.activeGlobalInteractions.remove(guildID, messageID);
 	}
 	
+	/**
+	 * Link the interaction group of a message to another message. If the group has a time to live it restarts.
+	 */
 	public void switchInteractionGroupMessage(String guildID, String messageID, String newMessageID)
 	{
-		HashMap<String, InteractionGroup> guildInteractionGroup = this.activeGlobalInteractions.computeIfAbsent(guildID, k -> new HashMap<>());
-		InteractionGroup interactionGroup = guildInteractionGroup.remove(messageID);
+		InteractionGroup interactionGroup = this.activeGlobalInteractions.remove(guildID, messageID);
 		
 		this.addInteractionGroup(guildID, newMessageID, interactionGroup);
 	}
 	
+	/**
+	 * Register a callback for the components whose id is created by {@link #createComponentId(String, String...)}
+	 * with the given name. The arguments of the component are available by decoding its id with
+	 * {@link ComponentId#decode(String)}.
+	 *
+	 * @param name
+	 * 		The name of the callback.
+	 * @param action
+	 * 		The action performed when a user interacts with the component.
+	 */
+	public void addStatelessCallback(String name, InteractionAction action)
+	{
+		this.statelessCallbacks.put(name, new InteractionCallback(name, action));
+	}
+	
+	public void removeStatelessCallback(String name)
+	{
+		this.statelessCallbacks.remove(name);
+	}
+	
+	/**
+	 * Create the id of a component handled by the stateless callback of this module with the given name.
+	 *
+	 * @param callbackName
+	 * 		The name of the callback.
+	 * @param args
+	 * 		The arguments of the component.
+	 *
+	 * @return
+	 * 		The encoded id of the component.
+	 */
+	public String createComponentId(String callbackName, String... args)
+	{
+		return ComponentId.encode(this.getInternalID(), callbackName, args);
+	}
+	
+	public InteractionRegistry getInteractionRegistry()
+	{
+		return this.activeGlobalInteractions;
+	}
+	
+	public ModuleLane getLane()
+	{
+		return this.lane;
+	}
+	
+	public void setLane(ModuleLane lane)
+	{
+		this.lane = lane;
+	}
+	
+	/**
+	 * Run the given task on the execution lane of the module, or directly if the module has no lane.
+	 *
+	 * @param task
+	 * 		The task to run.
+	 */
+	public void runInLane(Runnable task)
+	{
+		if (this.lane != null)
+			this.lane.execute(task);
+		else
+			task.run();
+	}
+	
 	public String getModuleName()
 	{
 		return this.moduleName;
@@ -513,26 +812,91 @@ public class BotListener extends ListenerAdapter
 		this.moduleName = moduleName;
 	}
 	
+	/**
+	 * Declare the members the module needs in the cache. Used when "bot.json" lets the modules choose the member cache,
+	 * so it must be called before the bot connects (for example in the constructor of the module).
+	 *
+	 * @param memberCache
+	 * 		The members the module needs.
+	 */
+	public void addMemberCache(MemberCache... memberCache)
+	{
+		this.memberCache.addAll(Arrays.asList(memberCache));
+	}
+	
+	/**
+	 * @return The members the module needs in the cache.
+	 */
+	public Set<MemberCache> getMemberCache()
+	{
+		return Collections.unmodifiableSet(this.memberCache);
+	}
+	
+	/**
+	 * Declare the gateway intents of the events handled by the module. Slash commands, context menus and components
+	 * need no intent. Must be called before the bot connects (for example in the constructor of the module).
+	 *
+	 * @param intents
+	 * 		The intents the module needs.
+	 */
+	public void addIntents(GatewayIntent... intents)
+	{
+		this.intents.addAll(Arrays.asList(intents));
+	}
+	
+	/**
+	 * @return The gateway intents the module needs.
+	 */
+	public Set<GatewayIntent> getIntents()
+	{
+		return Collections.unmodifiableSet(this.intents);
+	}
+	
+	/**
+	 * Declare the caches read by the module, the intents they need are enabled too. Must be called before the bot
+	 * connects (for example in the constructor of the module).
+	 *
+	 * @param cacheFlags
+	 * 		The cache flags the module needs.
+	 */
+	public void addCacheFlags(CacheFlag... cacheFlags)
+	{
+		this.cacheFlags.addAll(Arrays.asList(cacheFlags));
+	}
+	
+	/**
+	 * @return The cache flags the module needs.
+	 */
+	public Set<CacheFlag> getCacheFlags()
+	{
+		return Collections.unmodifiableSet(this.cacheFlags);
+	}
+	
+	/**
+	 * @return The commands of the module. The map can be changed, so the generated command lists are invalidated every
+	 * time it is requested: changes made through the map must happen before the commands are generated again.
+	 */
 	public Map<String, BotCommand> getBotCommands()
 	{
+		this.invalidateCommands();
 		return this.botCommands;
 	}
 	
 	public void addModalCallback(String guildID, String userID, ModalCallback modalCallback)
 	{
-		HashMap<String, ModalCallback> guildActiveModals = this.activeModalCallbacks.computeIfAbsent(guildID, k -> new HashMap<>());
-		guildActiveModals.put(userID, modalCallback);
+		if (modalCallback == null)
+			return;
+		
+		this.activeModalCallbacks.add(guildID, userID, modalCallback);
 	}
 	
 	public ModalCallback getModalCallback(String guildID, String userID)
 	{
-		HashMap<String, ModalCallback> guildActiveModals = this.activeModalCallbacks.computeIfAbsent(guildID, k -> new HashMap<>());
-		return guildActiveModals.get(userID);
+		return this.activeModalCallbacks.get(guildID, userID);
 	}
 	
 	public void removeModalCallback(String guildID, String userID)
 	{
-		HashMap<String, ModalCallback> guildActiveModals = this.activeModalCallbacks.computeIfAbsent(guildID, k -> new HashMap<>());
-		guildActiveModals.remove(userID);
+		this.activeModalCallbacks.remove(guildID, userID);
 	}
 }
@@ -0,0 +1,123 @@
+package com.serpenssolida.discordbot.module;
+
+import java.util.Arrays;
+
+/**
+ * Settings of every module for a single guild.
+ *
+ * <p>The values are stored in arrays indexed by the ordinal of the module given by the {@link ModuleRegistry}, so a
+ * guild costs two small arrays instead of one map entry per module. Default prefixes are the internal id of the module,
+ * so they share the same string instance.</p>
+ *
+ * <p>Reads are lock-free: writers lock the state of the guild and publish copies of the arrays, so concurrent writes to
+ * different modules of the same guild are never lost.</p>
+ */
+public final class GuildState
+{
+	private static final byte UNKNOWN = 0;
+	private static final byte ENABLED = 1;
+	private static final byte DISABLED = 2;
+	
+	private volatile String[] prefixes; //Prefix of every module, null if not set.
+	private volatile byte[] states; //State of every module, UNKNOWN if not set.
+	private volatile String commandsFingerprint; //Fingerprint of the command list last sent to the guild, null if unknown.
+	private volatile boolean loaded = false; //Whether the settings of the guild have been loaded from the storage.
+	
+	GuildState(int moduleCount)
+	{
+		this.prefixes = new String[moduleCount];
+		this.states = new byte[moduleCount];
+	}
+	
+	/**
+	 * @param ordinal
+	 * 		The ordinal of the module.
+	 *
+	 * @return The prefix of the module, or null if it has not been set.
+	 */
+	public String getPrefix(int ordinal)
+	{
+		String[] prefixes = this.prefixes;
+		return ordinal < prefixes.length ? prefixes[ordinal] : null;
+	}
+	
+	/**
+	 * Set the prefix of the module with the given ordinal.
+	 *
+	 * @param ordinal
+	 * 		The ordinal of the module.
+	 * @param prefix
+	 * 		The new prefix of the module.
+	 */
+	public synchronized void setPrefix(int ordinal, String prefix)
+	{
+		String[] prefixes = Arrays.copyOf(this.prefixes, Math.max(this.prefixes.length, ordinal + 1));
+		prefixes[ordinal] = prefix;
+		this.prefixes = prefixes;
+	}
+	
+	/**
+	 * @param ordinal
+	 * 		The ordinal of the module.
+	 *
+	 * @return True if the state of the module has been set.
+	 */
+	public boolean hasState(int ordinal)
+	{
+		byte[] states = this.states;
+		return ordinal < states.length && states[ordinal] != UNKNOWN;
+	}
+	
+	/**
+	 * @param ordinal
+	 * 		The ordinal of the module.
+	 *
+	 * @return True if the module is enabled or its state has not been set.
+	 */
+	public boolean isEnabled(int ordinal)
+	{
+		byte[] states = this.states;
+		return ordinal >= states.length || states[ordinal] != DISABLED;
+	}
+	
+	/**
+	 * Enable or disable the module with the given ordinal.
+	 *
+	 * @param ordinal
+	 * 		The ordinal of the module.
+	 * @param enabled
+	 * 		True to enable the module, false to disable it.
+	 */
+	public synchronized void setEnabled(int ordinal, boolean enabled)
+	{
+		byte[] states = Arrays.copyOf(this.states, Math.max(this.states.length, ordinal + 1));
+		states[ordinal] = enabled ? ENABLED : DISABLED;
+		this.states = states;
+	}
+	
+	/**
+	 * @return The fingerprint of the command list last sent to the guild, or null if it is unknown.
+	 */
+	public String getCommandsFingerprint()
+	{
+		return this.commandsFingerprint;
+	}
+	
+	public void setCommandsFingerprint(String commandsFingerprint)
+	{
+		this.commandsFingerprint = commandsFingerprint;
+	}
+	
+	/**
+	 * @return True if the settings of the guild have been loaded from the storage.
+	 */
+	public boolean isLoaded()
+	{
+		return this.loaded;
+	}
+	
+	public void setLoaded(boolean loaded)
+	{
+		this.loaded = loaded;
+	}
+}
@@ -0,0 +1,184 @@
+package com.serpenssolida.discordbot.module;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Store of the {@link GuildState} of every guild, keyed by the id of the guild.
+ *
+ * <p>The store is an open-addressing hash table with linear probing over primitive {@code long} keys, so there are
+ * no boxed keys nor entry objects. Guild ids are snowflakes and are never 0, so 0 marks an empty slot.</p>
+ *
+ * <p>Lookups are lock-free optimistic reads that are validated against a {@link StampedLock}, only the creation of a
+ * new guild state takes the write lock. The keys and the values are published together in a single {@link Table}, so
+ * a lookup never sees the arrays of two different sizes during a resize.</p>
+ */
+public class GuildStateStore
+{
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private volatile Table table = new Table(INITIAL_CAPACITY);
+	private int size = 0;
+	private final StampedLock lock = new StampedLock();
+	
+	/**
+	 * Keys and values of the hash table, replaced as a whole when the table grows.
+	 */
+	private static final class Table
+	{
+		private final long[] keys;
+		private final GuildState[] values;
+		
+		private Table(int capacity)
+		{
+			this.keys = new long[capacity];
+			this.values = new GuildState[capacity];
+		}
+	}
+	
+	/**
+	 * Get the state of the given guild.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 *
+	 * @return
+	 * 		The state of the guild, or null if the guild has no state.
+	 */
+	public GuildState get(long guildID)
+	{
+		//Try without locking, the result is valid only if no writer changed the table in the meantime.
+		long stamp = this.lock.tryOptimisticRead();
+		GuildState state = GuildStateStore.find(this.table, guildID);
+		
+		if (this.lock.validate(stamp))
+			return state;
+		
+		stamp = this.lock.readLock();
+		try
+		{
+			return GuildStateStore.find(this.table, guildID);
+		}
+		finally
+		{
+			this.lock.unlockRead(stamp);
+		}
+	}
+	
+	private static GuildState find(Table table, long guildID)
+	{
+		long[] keys = table.keys;
+		int mask = keys.length - 1;
+		
+		//The table is never full, so the probe always reaches an empty slot.
+		for (int i = GuildStateStore.hash(guildID) & mask; keys[i] != 0; i = (i + 1) & mask)
+		{
+			if (keys[i] == guildID)
+				return table.values[i];
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Get the state of the given guild, creating it if the guild has no state.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param moduleCount
+	 * 		The number of modules, used to size a new state.
+	 *
+	 * @return
+	 * 		The state of the guild.
+	 */
+	public GuildState getOrCreate(long guildID, int moduleCount)
+	{
+		GuildState state = this.get(guildID);
+		
+		if (state != null)
+			return state;
+		
+		long stamp = this.lock.writeLock();
+		try
+		{
+			//Another thread could have created the state while waiting for the lock.
+			state = GuildStateStore.find(this.table, guildID);
+			
+			if (state != null)
+				return state;
+			
+			//Keep the load factor under 0.5.
+			if ((this.size + 1) * 2 > this.table.keys.length)
+				this.resize(this.table.keys.length * 2);
+			
+			state = new GuildState(moduleCount);
+			GuildStateStore.insert(this.table, guildID, state);
+			this.size++;
+			
+			return state;
+		}
+		finally
+		{
+			this.lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Remove the state of every guild.
+	 */
+	public void clear()
+	{
+		long stamp = this.lock.writeLock();
+		try
+		{
+			this.table = new Table(INITIAL_CAPACITY);
+			this.size = 0;
+		}
+		finally
+		{
+			this.lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * @return The number of guilds that have a state.
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+	
+	private void resize(int capacity)
+	{
+		Table oldTable = this.table;
+		Table newTable = new Table(capacity);
+		
+		for (int i = 0; i < oldTable.keys.length; i++)
+		{
+			if (oldTable.keys[i] != 0)
+				GuildStateStore.insert(newTable, oldTable.keys[i], oldTable.values[i]);
+		}
+		
+		//The new table is complete before it is published.
+		this.table = newTable;
+	}
+	
+	private static void insert(Table table, long guildID, GuildState state)
+	{
+		long[] keys = table.keys;
+		int mask = keys.length - 1;
+		int i = GuildStateStore.hash(guildID) & mask;
+		
+		while (keys[i] != 0)
+			i = (i + 1) & mask;
+		
+		table.values[i] = state;
+		keys[i] = guildID;
+	}
+	
+	private static int hash(long key)
+	{
+		//Fibonacci hashing, snowflakes have poor entropy in the low bits.
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
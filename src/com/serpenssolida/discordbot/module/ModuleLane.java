@@ -0,0 +1,160 @@
+package com.serpenssolida.discordbot.module;
+
+import com.serpenssolida.discordbot.SerpensBot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded execution lane of a {@link BotListener}.
+ *
+ * <p>The handlers of a module with a lane run on the threads of the lane, so a slow or misbehaving module fills its own
+ * queue and drops its own events instead of delaying the other modules. Handlers that run longer than the configured
+ * timeout are interrupted.</p>
+ */
+public class ModuleLane
+{
+	private final String moduleID;
+	private final ThreadPoolExecutor executor;
+	private final long timeout;
+	private final AtomicLong rejectedTasks = new AtomicLong();
+	private final AtomicBoolean rejecting = new AtomicBoolean(); //True from a rejection until the next accepted task.
+	private final AtomicLong timedOutTasks = new AtomicLong();
+	
+	private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "SerpensBot-Lane-Watchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private static final Logger logger = LoggerFactory.getLogger(ModuleLane.class);
+	
+	public ModuleLane(String moduleID, ModuleLaneSettings settings)
+	{
+		AtomicInteger threadCount = new AtomicInteger();
+		int threads = Math.max(1, settings.getThreads());
+		
+		this.moduleID = moduleID;
+		this.timeout = settings.getTimeout();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, settings.getQueueSize())), runnable ->
+		{
+			Thread thread = new Thread(runnable, "SerpensBot-" + moduleID + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.setRejectedExecutionHandler(this.createRejectionHandler(settings.getRejectionPolicy()));
+	}
+	
+	/**
+	 * Queue the given task in the lane.
+	 *
+	 * @param task
+	 * 		The task to run.
+	 */
+	public void execute(Runnable task)
+	{
+		long rejected = this.rejectedTasks.get();
+		this.executor.execute(this.timeout > 0 ? () -> this.runWithTimeout(task) : task);
+		
+		//The task has been accepted, the burst of rejections is over.
+		if (this.rejectedTasks.get() == rejected)
+			this.rejecting.set(false);
+	}
+	
+	/**
+	 * Run the given task interrupting it if it lasts more than the timeout of the lane.
+	 */
+	private void runWithTimeout(Runnable task)
+	{
+		Thread thread = Thread.currentThread();
+		boolean[] done = new boolean[1];
+		
+		ScheduledFuture<?> timer = watchdog.schedule(() ->
+		{
+			synchronized (done)
+			{
+				if (done[0])
+					return;
+				
+				this.timedOutTasks.incrementAndGet();
+				logger.warn(SerpensBot.getMessage("module_lane_timeout", this.moduleID, this.timeout));
+				thread.interrupt();
+			}
+		}, this.timeout, TimeUnit.MILLISECONDS);
+		
+		try
+		{
+			task.run();
+		}
+		finally
+		{
+			synchronized (done)
+			{
+				done[0] = true;
+			}
+			
+			timer.cancel(false);
+			
+			//Do not leak the interrupt of the watchdog to the next task.
+			Thread.interrupted();
+		}
+	}
+	
+	private RejectedExecutionHandler createRejectionHandler(ModuleLaneSettings.RejectionPolicy policy)
+	{
+		RejectedExecutionHandler handler = switch (policy != null ? policy : ModuleLaneSettings.RejectionPolicy.DROP_NEWEST)
+		{
+			case DROP_OLDEST -> new ThreadPoolExecutor.DiscardOldestPolicy();
+			case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+			default -> new ThreadPoolExecutor.DiscardPolicy();
+		};
+		
+		return (runnable, executor) ->
+		{
+			long rejected = this.rejectedTasks.incrementAndGet();
+			
+			//Log only the first rejection of every burst, a burst ends when a task is accepted.
+			if (this.rejecting.compareAndSet(false, true))
+				logger.warn(SerpensBot.getMessage("module_lane_rejected", this.moduleID, rejected));
+			
+			handler.rejectedExecution(runnable, executor);
+		};
+	}
+	
+	/**
+	 * Stop accepting new tasks, the queued ones will still be run.
+	 */
+	public void shutdown()
+	{
+		this.executor.shutdown();
+	}
+	
+	/**
+	 * @return The number of tasks waiting in the queue.
+	 */
+	public int getQueuedTasks()
+	{
+		return this.executor.getQueue().size();
+	}
+	
+	/**
+	 * @return The number of tasks that found the queue full.
+	 */
+	public long getRejectedTasks()
+	{
+		return this.rejectedTasks.get();
+	}
+	
+	/**
+	 * @return The number of tasks that were interrupted because they exceeded the timeout.
+	 */
+	public long getTimedOutTasks()
+	{
+		return this.timedOutTasks.get();
+	}
+}
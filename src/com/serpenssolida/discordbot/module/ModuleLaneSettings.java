@@ -0,0 +1,42 @@
+package com.serpenssolida.discordbot.module;
+
+/**
+ * Limits of the execution lane of a module, read from the "moduleLanes" object of "bot.json".
+ */
+public class ModuleLaneSettings
+{
+	private int threads = 1; //Number of threads that run the handlers of the module.
+	private int queueSize = 100; //Maximum number of events waiting to be handled.
+	private RejectionPolicy rejectionPolicy = RejectionPolicy.DROP_NEWEST; //What to do when the queue is full.
+	private long timeout = 30000; //Maximum time in milliseconds a handler can run before being interrupted, 0 to disable.
+	
+	/**
+	 * Policy used when an event is submitted to a module whose queue is full.
+	 */
+	public enum RejectionPolicy
+	{
+		DROP_NEWEST, //The new event is discarded.
+		DROP_OLDEST, //The oldest queued event is discarded to make room for the new one.
+		CALLER_RUNS //The new event is handled by the thread that submitted it.
+	}
+	
+	public int getThreads()
+	{
+		return this.threads;
+	}
+	
+	public int getQueueSize()
+	{
+		return this.queueSize;
+	}
+	
+	public RejectionPolicy getRejectionPolicy()
+	{
+		return this.rejectionPolicy;
+	}
+	
+	public long getTimeout()
+	{
+		return this.timeout;
+	}
+}
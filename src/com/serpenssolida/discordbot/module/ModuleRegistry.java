@@ -0,0 +1,108 @@
+package com.serpenssolida.discordbot.module;
+
+import com.serpenssolida.discordbot.SerpensBot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Registry of the modules of the bot.
+ *
+ * <p>The registry keeps an immutable snapshot of the registered modules (a list and an id -> module index) that is
+ * rebuilt only when a module is registered or the registry is cleared. Readers never lock and never allocate.</p>
+ */
+public class ModuleRegistry
+{
+	private volatile Snapshot snapshot = new Snapshot(new BotListener[0]);
+	
+	private static final Logger logger = LoggerFactory.getLogger(ModuleRegistry.class);
+	
+	/**
+	 * Immutable view of the registered modules.
+	 */
+	private static final class Snapshot
+	{
+		private final BotListener[] modules;
+		private final List<BotListener> moduleList;
+		private final Map<String, BotListener> modulesById;
+		
+		private Snapshot(BotListener[] modules)
+		{
+			HashMap<String, BotListener> modulesById = new HashMap<>();
+			
+			for (BotListener module : modules)
+				modulesById.put(module.getInternalID(), module);
+			
+			this.modules = modules;
+			this.moduleList = List.of(modules);
+			this.modulesById = modulesById;
+		}
+	}
+	
+	/**
+	 * Add the given module to the registry.
+	 *
+	 * @param listener
+	 * 		The module to register.
+	 *
+	 * @return
+	 * 		True if the module was registered, false if a module with the same id is already registered.
+	 */
+	public synchronized boolean register(BotListener listener)
+	{
+		BotListener[] modules = this.snapshot.modules;
+		
+		if (this.snapshot.modulesById.containsKey(listener.getInternalID()))
+		{
+			logger.warn(SerpensBot.getMessage("module_id_not_unique", listener.getInternalID()));
+			return false;
+		}
+		
+		//Copy the array and publish the new snapshot.
+		BotListener[] newModules = Arrays.copyOf(modules, modules.length + 1);
+		newModules[modules.length] = listener;
+		listener.setOrdinal(modules.length);
+		
+		this.snapshot = new Snapshot(newModules);
+		return true;
+	}
+	
+	/**
+	 * Remove all modules from the registry.
+	 */
+	public synchronized void clear()
+	{
+		this.snapshot = new Snapshot(new BotListener[0]);
+	}
+	
+	/**
+	 * @return The immutable list of registered modules.
+	 */
+	public List<BotListener> getModules()
+	{
+		return this.snapshot.moduleList;
+	}
+	
+	/**
+	 * Get the module with the given id.
+	 *
+	 * @param moduleID
+	 * 		The internal id of the module.
+	 *
+	 * @return
+	 * 		The module with the given id, or null if there is no such module.
+	 */
+	public BotListener getModule(String moduleID)
+	{
+		return this.snapshot.modulesById.get(moduleID);
+	}
+	
+	/**
+	 * @return The number of registered modules.
+	 */
+	public int size()
+	{
+		return this.snapshot.modules.length;
+	}
+}
@@ -10,34 +10,54 @@ import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
+import java.util.List;
 
 public class BaseListener extends BotListener
 {
+	private final List<CommandData> helpCommand = List.of(Commands.slash("help" , SerpensBot.getMessage("base_command_help_description"))); //The same for every guild.
+	
 	public BaseListener()
 	{
 		super("base");
 		this.setModuleName("Base");
 		
 		//Module has no tasks and cannot get help.
-		this.getBotCommands().clear();
+		this.clearBotCommands();
+		
+		//The "!!reset prefixes" command is read from the messages.
+		this.addIntents(GatewayIntent.GUILD_MESSAGES, GatewayIntent.MESSAGE_CONTENT);
+		
+		//The help command has the same name in every guild.
+		SerpensBot.getCommandDispatcher().addGlobalCommand("help", this);
 	}
 	
 	@Override
-	public ArrayList<CommandData> generateCommands(Guild guild)
+	public List<CommandData> generateCommands(Guild guild)
 	{
-		ArrayList<CommandData> commandList = new ArrayList<>();
-		CommandData mainCommand = Commands.slash("help" , SerpensBot.getMessage("base_command_help_description"));
-		
-		commandList.add(mainCommand);
-		return commandList;
+		return new ArrayList<>(this.helpCommand);
+	}
+	
+	@Override
+	public List<CommandData> generateGlobalCommands()
+	{
+		return new ArrayList<>(this.helpCommand);
+	}
+	
+	@Override
+	public List<CommandData> generateGuildOverrides(Guild guild)
+	{
+		//The help command is always global.
+		return new ArrayList<>();
 	}
 	
 	@Override
@@ -62,23 +82,24 @@ public class BaseListener extends BotListener
 	}
 	
 	@Override
-	public void onSlashCommandInteraction(SlashCommandInteractionEvent event)
+	public void handleSlashCommand(SlashCommandInteractionEvent event)
 	{
-		Guild guild = event.getGuild();
-		
-		if (guild == null)
-			return;
-		
-		if (!"help".equals(event.getName()))
-			return;
-		
 		this.sendModuleHelp(event, event.getGuild(), event.getUser());
 	}
 	
 	@Override
 	public void onGuildJoin(@NotNull GuildJoinEvent event)
 	{
-		SerpensBot.updateGuildCommands(event.getGuild());
+		//A guild that the bot joins again has lost the commands, even if the fingerprint says they did not change.
+		SerpensBot.clearCommandsFingerprint(event.getGuild().getId());
+		SerpensBot.updateGuildCommands(event.getGuild(), true);
+	}
+	
+	@Override
+	public void onGuildLeave(@NotNull GuildLeaveEvent event)
+	{
+		//Discord deletes the commands of the guild.
+		SerpensBot.clearCommandsFingerprint(event.getGuild().getId());
 	}
 	
 	@Override
@@ -0,0 +1,28 @@
+package com.serpenssolida.discordbot.module.logger;
+
+import com.serpenssolida.discordbot.module.ModuleLaneSettings;
+
+/**
+ * Limits of the queue of the events logged by the {@link LoggerListener}, read from the "eventLog" object of "bot.json".
+ */
+public class EventLogSettings
+{
+	private int queueSize = 10000; //Maximum number of events waiting to be written.
+	private int batchSize = 500; //Maximum number of events written at every wake up of the writer.
+	private ModuleLaneSettings.RejectionPolicy overflowPolicy = ModuleLaneSettings.RejectionPolicy.DROP_NEWEST; //What to do when the queue is full.
+	
+	public int getQueueSize()
+	{
+		return this.queueSize;
+	}
+	
+	public int getBatchSize()
+	{
+		return this.batchSize;
+	}
+	
+	public ModuleLaneSettings.RejectionPolicy getOverflowPolicy()
+	{
+		return this.overflowPolicy;
+	}
+}
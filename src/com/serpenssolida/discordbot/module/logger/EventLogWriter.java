@@ -0,0 +1,178 @@
+package com.serpenssolida.discordbot.module.logger;
+
+import com.serpenssolida.discordbot.SerpensBot;
+import com.serpenssolida.discordbot.log.EventTimePatternLayout;
+import com.serpenssolida.discordbot.module.ModuleLaneSettings;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the events captured by the {@link LoggerListener} from a background thread.
+ *
+ * <p>The handlers of the listener only put a {@link LoggedEvent} in a bounded queue, the writer takes the queued events
+ * in batches and formats and writes their log lines, so logging does not delay the handling of the events. When the
+ * queue is full the overflow policy decides whether the new event is dropped, the oldest event is dropped or the
+ * event is written by the thread that captured it.</p>
+ *
+ * <p>The time at which the event was captured is passed to the log layout in the
+ * {@value EventTimePatternLayout#EVENT_TIME_KEY} MDC entry, so the log lines keep the time of the events even when the
+ * queue is long.</p>
+ */
+class EventLogWriter implements Runnable
+{
+	private final BlockingQueue<LoggedEvent> queue;
+	private final int batchSize;
+	private final ModuleLaneSettings.RejectionPolicy overflowPolicy;
+	private final Logger eventLogger;
+	private final AtomicLong droppedEvents = new AtomicLong();
+	private final Thread thread;
+	private volatile boolean running = true;
+	private long lastReport; //Time in milliseconds of the last report of the dropped events.
+	
+	private static final long REPORT_INTERVAL = 10000; //Minimum time in milliseconds between two reports of the dropped events.
+	private static final long SHUTDOWN_TIMEOUT = 5000; //Maximum time in milliseconds waited for the queued events to be written.
+	
+	/**
+	 * @param settings
+	 * 		The limits of the queue.
+	 * @param eventLogger
+	 * 		The logger that writes the log lines of the events.
+	 */
+	EventLogWriter(EventLogSettings settings, Logger eventLogger)
+	{
+		ModuleLaneSettings.RejectionPolicy policy = settings.getOverflowPolicy();
+		
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, settings.getQueueSize()));
+		this.batchSize = Math.max(1, settings.getBatchSize());
+		this.overflowPolicy = policy != null ? policy : ModuleLaneSettings.RejectionPolicy.DROP_NEWEST;
+		this.eventLogger = eventLogger;
+		this.thread = new Thread(this, "SerpensBot-EventLog");
+		this.thread.setDaemon(true);
+	}
+	
+	void start()
+	{
+		this.thread.start();
+	}
+	
+	/**
+	 * Stop the writer and wait until the queued events have been written.
+	 */
+	void shutdown()
+	{
+		this.running = false;
+		this.thread.interrupt();
+		
+		try
+		{
+			this.thread.join(EventLogWriter.SHUTDOWN_TIMEOUT);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Queue the given event, applying the overflow policy if the queue is full.
+	 *
+	 * @param event
+	 * 		The event to log.
+	 */
+	void submit(LoggedEvent event)
+	{
+		if (this.queue.offer(event))
+			return;
+		
+		switch (this.overflowPolicy)
+		{
+			case DROP_OLDEST ->
+			{
+				//Make room for the new event, another thread can fill the queue again in the meantime.
+				do
+				{
+					if (this.queue.poll() != null)
+						this.droppedEvents.incrementAndGet();
+				}
+				while (!this.queue.offer(event));
+			}
+			case CALLER_RUNS -> EventLogWriter.write(this.eventLogger, event);
+			default -> this.droppedEvents.incrementAndGet();
+		}
+	}
+	
+	@Override
+	public void run()
+	{
+		List<LoggedEvent> batch = new ArrayList<>(this.batchSize);
+		
+		while (this.running || !this.queue.isEmpty())
+		{
+			try
+			{
+				LoggedEvent event = this.running ? this.queue.poll(1, TimeUnit.SECONDS) : this.queue.poll();
+				
+				if (event != null)
+					batch.add(event);
+			}
+			catch (InterruptedException e)
+			{
+				//Interrupted by shutdown, the loop writes the events left in the queue.
+				continue;
+			}
+			
+			if (!batch.isEmpty())
+				this.queue.drainTo(batch, this.batchSize - 1);
+			
+			for (LoggedEvent event : batch)
+				EventLogWriter.write(this.eventLogger, event);
+			
+			batch.clear();
+			
+			if (System.currentTimeMillis() - this.lastReport >= EventLogWriter.REPORT_INTERVAL)
+				this.reportDroppedEvents();
+		}
+		
+		this.reportDroppedEvents();
+	}
+	
+	/**
+	 * Write the log line of the given event on the calling thread.
+	 */
+	static void write(Logger eventLogger, LoggedEvent event)
+	{
+		MDC.put(EventTimePatternLayout.EVENT_TIME_KEY, Long.toString(event.getTime()));
+		
+		try
+		{
+			eventLogger.info(event.getKind().getPattern(), event.getArguments());
+		}
+		catch (RuntimeException e)
+		{
+			eventLogger.error(e.getLocalizedMessage(), e);
+		}
+		finally
+		{
+			MDC.remove(EventTimePatternLayout.EVENT_TIME_KEY);
+		}
+	}
+	
+	/**
+	 * Log the number of events dropped since the previous report.
+	 */
+	private void reportDroppedEvents()
+	{
+		long dropped = this.droppedEvents.getAndSet(0);
+		this.lastReport = System.currentTimeMillis();
+		
+		if (dropped > 0)
+			this.eventLogger.warn(SerpensBot.getMessage("event_log_dropped", dropped));
+	}
+}
@@ -0,0 +1,73 @@
+package com.serpenssolida.discordbot.module.logger;
+
+/**
+ * Event captured by the {@link LoggerListener}, holding only the strings needed to write its log line and the time at
+ * which it happened.
+ */
+final class LoggedEvent
+{
+	private final Kind kind;
+	private final String[] fields;
+	private final long time; //Time in milliseconds at which the event was captured.
+	
+	private static final int MAX_MESSAGE_LENGTH = 150; //Maximum number of characters of a logged message.
+	
+	/**
+	 * Kind of the event and pattern of its log line. The line starts with the tag and the id of the guild, followed by
+	 * the name of the guild, so the log can be searched by guild.
+	 */
+	enum Kind
+	{
+		MESSAGE_RECEIVED("[MESSAGE RECEIVED][{}][{}][#{}][{}] {}"),
+		REACTION_ADDED("[REACTION ADDED][{}][{}][#{}][{}][{}] {}"),
+		SLASH_COMMAND("[SLASH COMMAND][{}][{}][#{}][{}] {}"),
+		INTERACTION("[INTERACTION][{}][{}][#{}][{}][{}][{}] {}"),
+		MODAL_INTERACTION("[MODAL INTERACTION][{}][{}][{}] {}");
+		
+		private final String pattern;
+		
+		Kind(String pattern)
+		{
+			this.pattern = pattern;
+		}
+		
+		String getPattern()
+		{
+			return this.pattern;
+		}
+	}
+	
+	LoggedEvent(Kind kind, String... fields)
+	{
+		this.kind = kind;
+		this.fields = fields.clone();
+		this.time = System.currentTimeMillis();
+	}
+	
+	Kind getKind()
+	{
+		return this.kind;
+	}
+	
+	long getTime()
+	{
+		return this.time;
+	}
+	
+	/**
+	 * @return The arguments of the pattern of the log line. The content of a received message is shortened here, so the
+	 * cost is paid by the writer instead of the thread that received the event.
+	 */
+	Object[] getArguments()
+	{
+		Object[] arguments = this.fields.clone();
+		
+		if (this.kind == Kind.MESSAGE_RECEIVED)
+		{
+			String message = this.fields[this.fields.length - 1].replaceAll(" +", " ");
+			arguments[arguments.length - 1] = message.substring(0, Math.min(LoggedEvent.MAX_MESSAGE_LENGTH, message.length()));
+		}
+		
+		return arguments;
+	}
+}
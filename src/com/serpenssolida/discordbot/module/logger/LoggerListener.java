@@ -11,6 +11,7 @@ import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEve
 import net.dv8tion.jda.api.events.interaction.component.GenericComponentInteractionCreateEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +19,7 @@ import org.slf4j.LoggerFactory;
 public class LoggerListener extends BotListener
 {
 	private static final Logger logger = LoggerFactory.getLogger(LoggerListener.class);
+	private static volatile EventLogWriter writer; //Writer of the logged events, null if the event log is not running.
 	
 	public LoggerListener()
 	{
@@ -25,7 +27,53 @@ public class LoggerListener extends BotListener
 		this.setModuleName("Logger");
 		
 		//Clear all commands.
-		this.getBotCommands().clear();
+		this.clearBotCommands();
+		
+		//The module logs the messages and the reactions.
+		this.addIntents(GatewayIntent.GUILD_MESSAGES, GatewayIntent.MESSAGE_CONTENT, GatewayIntent.GUILD_MESSAGE_REACTIONS);
+	}
+	
+	/**
+	 * Start writing the logged events from a background thread. The writer of a previous run is stopped first.
+	 *
+	 * @param settings
+	 * 		The limits of the queue of the events.
+	 */
+	public static synchronized void startEventLog(EventLogSettings settings)
+	{
+		LoggerListener.stopEventLog();
+		
+		EventLogWriter eventLogWriter = new EventLogWriter(settings != null ? settings : new EventLogSettings(), logger);
+		eventLogWriter.start();
+		LoggerListener.writer = eventLogWriter;
+	}
+	
+	/**
+	 * Stop the background writer after writing the queued events, the events logged later are written by the thread
+	 * that handles them.
+	 */
+	public static synchronized void stopEventLog()
+	{
+		EventLogWriter eventLogWriter = LoggerListener.writer;
+		
+		if (eventLogWriter == null)
+			return;
+		
+		LoggerListener.writer = null;
+		eventLogWriter.shutdown();
+	}
+	
+	/**
+	 * Queue the given event in the background writer, or write it now if the writer is not running.
+	 */
+	private static void log(LoggedEvent event)
+	{
+		EventLogWriter eventLogWriter = LoggerListener.writer;
+		
+		if (eventLogWriter != null)
+			eventLogWriter.submit(event);
+		else
+			EventLogWriter.write(logger, event);
 	}
 	
 	@Override
@@ -35,7 +83,7 @@ public class LoggerListener extends BotListener
 		if (!event.isFromGuild())
 			return;
 		
-		String message = event.getMessage().getContentDisplay().replaceAll(" +", " "); //Received message.
+		String message = event.getMessage().getContentDisplay(); //Received message.
 		Guild guild = event.getGuild();
 		User author = event.getAuthor(); //Author of the message.
 		MessageChannel channel = event.getChannel(); //Channel where the message was sent.
@@ -45,7 +93,7 @@ public class LoggerListener extends BotListener
 			return;
 		
 		//Log the event.
-		logger.info("[MESSAGE RECEIVED][{}][#{}][{}] {}", guild.getName(), channel.getName(), author.getName(), message.substring(0, Math.min(150, message.length())));
+		LoggerListener.log(new LoggedEvent(LoggedEvent.Kind.MESSAGE_RECEIVED, guild.getId(), guild.getName(), channel.getName(), author.getName(), message));
 	}
 	
 	@Override
@@ -68,7 +116,7 @@ public class LoggerListener extends BotListener
 			return;
 		
 		//Log the event.
-		logger.info("[REACTION ADDED][{}][#{}][{}][{}] {}", guild.getName(), channel.getName(), event.getMessageId(), author.getName(), messageReaction.getEmoji().getName());
+		LoggerListener.log(new LoggedEvent(LoggedEvent.Kind.REACTION_ADDED, guild.getId(), guild.getName(), channel.getName(), event.getMessageId(), author.getName(), messageReaction.getEmoji().getName()));
 	}
 	
 	@Override
@@ -90,7 +138,7 @@ public class LoggerListener extends BotListener
 			return;
 		
 		//Log the event.
-		logger.info("[SLASH COMMAND][{}][#{}][{}] {}", guild.getName(), channel.getName(), author.getName(), "/"+ event.getCommandIdLong());
+		LoggerListener.log(new LoggedEvent(LoggedEvent.Kind.SLASH_COMMAND, guild.getId(), guild.getName(), channel.getName(), author.getName(), "/"+ event.getCommandIdLong()));
 	}
 	
 	@Override
@@ -111,7 +159,7 @@ public class LoggerListener extends BotListener
 		
 		//Log the event.
 		String messageID = event.getMessage().getId();
-		logger.info("[INTERACTION][{}][#{}][{}][{}][{}] {}", guild.getName(), channel.getName(), event.getComponentType(), messageID, author.getName(), componendId);
+		LoggerListener.log(new LoggedEvent(LoggedEvent.Kind.INTERACTION, guild.getId(), guild.getName(), channel.getName(), event.getComponentType().toString(), messageID, author.getName(), componendId));
 	}
 	
 	@Override
@@ -132,7 +180,13 @@ public class LoggerListener extends BotListener
 			return;
 		
 		//Log the event.
-		logger.info("[MODAL INTERACTION][{}][{}] {}", guild.getName(), author.getName(), "/"+ event.getModalId());
+		LoggerListener.log(new LoggedEvent(LoggedEvent.Kind.MODAL_INTERACTION, guild.getId(), guild.getName(), author.getName(), "/"+ event.getModalId()));
+	}
+	
+	@Override
+	public void setModulePrefix(String guildID, String modulePrefix)
+	{
+		super.setModulePrefix(guildID, "");
 	}
 	
 	@Override
@@ -7,6 +7,7 @@ public class SettingsData
 {
 	private Map<String, String> modulePrefixes = new HashMap<>();
 	private Map<String, Boolean> moduleStates = new HashMap<>();
+	private String commandsFingerprint; //Fingerprint of the command list last sent to the guild.
 	
 	public Map<String, String> getModulePrefixes()
 	{
@@ -27,5 +28,14 @@ public class SettingsData
 	{
 		this.moduleStates = moduleStates;
 	}
-
+	
+	public String getCommandsFingerprint()
+	{
+		return this.commandsFingerprint;
+	}
+	
+	public void setCommandsFingerprint(String commandsFingerprint)
+	{
+		this.commandsFingerprint = commandsFingerprint;
+	}
 }
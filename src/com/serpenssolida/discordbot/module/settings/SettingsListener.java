@@ -20,12 +20,8 @@ import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashSet;
-
 public class SettingsListener extends BotListener
 {
-	private final HashSet<String> loadedGuilds = new HashSet<>();
-	
 	public SettingsListener()
 	{
 		super("settings");
@@ -66,16 +62,9 @@ public class SettingsListener extends BotListener
 		
 		String guildID = event.getGuild().getId();
 		
-		//Check if guild has not been loaded.
-		if (!this.loadedGuilds.contains(guildID))
-		{
-			//Load guild settings.
-			boolean loaded = SerpensBot.loadSettings(guildID);
-			
-			//If settings were correctly loaded add guild to the loaded set.
-			if (loaded)
-				this.loadedGuilds.add(guildID);
-		}
+		//Load guild settings if they have not been loaded yet.
+		if (!SerpensBot.isSettingsLoaded(guildID))
+			SerpensBot.loadSettings(guildID);
 	}
 
 	@Override
@@ -83,18 +72,9 @@ public class SettingsListener extends BotListener
 	{
 		String guildID = event.getGuild().getId();
 		
-		//Check if guild has not been loaded.
-		if (!this.loadedGuilds.contains(guildID))
-		{
-			//Load guild settings.
-			boolean loaded = SerpensBot.loadSettings(guildID);
-			
-			//If settings were correctly loaded add guild to the loaded set.
-			if (loaded)
-				this.loadedGuilds.add(guildID);
-		}
-		
-		super.onSlashCommandInteraction(event);
+		//Load guild settings if they have not been loaded yet.
+		if (!SerpensBot.isSettingsLoaded(guildID))
+			SerpensBot.loadSettings(guildID);
 	}
 	
 	@Override
@@ -102,16 +82,9 @@ public class SettingsListener extends BotListener
 	{
 		String guildID = event.getGuild().getId();
 		
-		//Check if guild has not been loaded.
-		if (!this.loadedGuilds.contains(guildID))
-		{
-			//Load guild settings.
-			boolean loaded = SerpensBot.loadSettings(guildID);
-			
-			//If settings were correctly loaded add guild to the loaded set.
-			if (loaded)
-				this.loadedGuilds.add(guildID);
-		}
+		//Load guild settings if they have not been loaded yet.
+		if (!SerpensBot.isSettingsLoaded(guildID))
+			SerpensBot.loadSettings(guildID);
 		
 	}
 	
@@ -198,6 +171,14 @@ public class SettingsListener extends BotListener
 				}
 			}
 			
+			//A prefix cannot be the name of a global command, unless it is the default prefix of the module itself.
+			if (!newPrefix.equals(listener.getInternalID()) && SerpensBot.getCommandDispatcher().isGlobalCommand(newPrefix))
+			{
+				MessageCreateData message = MessageUtils.buildErrorMessage(embedTitle, author, SerpensBot.getMessage("settings_module_prefix_global_error", newPrefix));
+				event.reply(message).setEphemeral(true).queue();
+				return;
+			}
+			
 			//Set the new prefix to the module.
 			listener.setModulePrefix(guildID, newPrefix);
 			SerpensBot.updateGuildCommands(guild);
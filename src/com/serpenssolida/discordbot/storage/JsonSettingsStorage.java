@@ -0,0 +1,108 @@
+package com.serpenssolida.discordbot.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.serpenssolida.discordbot.SerpensBot;
+import com.serpenssolida.discordbot.module.settings.SettingsData;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Stores the settings of every guild in its own JSON file, {@code <root>/<guild id>/settings/settings.json}. This is
+ * the default storage.
+ */
+public class JsonSettingsStorage implements SettingsStorage
+{
+	private final Path root;
+	
+	private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	private static final String SETTINGS_FILE = "settings.json";
+	
+	public JsonSettingsStorage(Path root)
+	{
+		this.root = root;
+	}
+	
+	@Override
+	public SettingsData load(String guildID) throws IOException
+	{
+		Path settingsFile = this.getSettingsPath(guildID);
+		
+		if (!Files.exists(settingsFile))
+			return null;
+		
+		try (BufferedReader reader = Files.newBufferedReader(settingsFile))
+		{
+			SettingsData settingsData = gson.fromJson(reader, SettingsData.class);
+			
+			//Check if the data was read correctly.
+			if (settingsData == null)
+				throw new IOException(SerpensBot.getMessage("settings_storage_bad_file", settingsFile));
+			
+			return settingsData;
+		}
+		catch (JsonParseException e)
+		{
+			throw new IOException(SerpensBot.getMessage("settings_storage_bad_file", settingsFile), e);
+		}
+	}
+	
+	/**
+	 * Write the settings to a temporary file and move it over the settings file, so a crash never leaves a truncated
+	 * settings file.
+	 */
+	@Override
+	public void save(String guildID, SettingsData settingsData) throws IOException
+	{
+		Path settingsFile = this.getSettingsPath(guildID);
+		Files.createDirectories(settingsFile.getParent());
+		
+		Path temporaryFile = settingsFile.resolveSibling(SETTINGS_FILE + ".tmp");
+		Files.writeString(temporaryFile, gson.toJson(settingsData) + System.lineSeparator());
+		
+		try
+		{
+			Files.move(temporaryFile, settingsFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(temporaryFile, settingsFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	@Override
+	public Collection<String> getGuildIDs() throws IOException
+	{
+		List<String> guildIDs = new ArrayList<>();
+		
+		if (!Files.isDirectory(this.root))
+			return guildIDs;
+		
+		try (Stream<Path> guildFolders = Files.list(this.root))
+		{
+			guildFolders
+					.filter(folder -> Files.exists(folder.resolve(SerpensBot.SETTINGS_FOLDER).resolve(SETTINGS_FILE)))
+					.forEach(folder -> guildIDs.add(folder.getFileName().toString()));
+		}
+		
+		return guildIDs;
+	}
+	
+	@Override
+	public void close() {}
+	
+	private Path getSettingsPath(String guildID)
+	{
+		return this.root.resolve(guildID).resolve(SerpensBot.SETTINGS_FOLDER).resolve(SETTINGS_FILE);
+	}
+}
@@ -0,0 +1,430 @@
+package com.serpenssolida.discordbot.storage;
+
+import com.serpenssolida.discordbot.SerpensBot;
+import com.serpenssolida.discordbot.module.settings.SettingsData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the settings of every guild in a single append-only file.
+ *
+ * <p>Every save appends a record to the end of the file and an in-memory index keeps the offset of the latest record
+ * of every guild, so a load costs one positional read and a save one append. A record is made of the length of the
+ * payload, the id of the guild, the payload and the CRC32 of the id and the payload, the payload is a compact binary
+ * encoding of the {@link SettingsData}. A record torn by a crash fails its check and is cut off when the file is
+ * opened, a damaged record in the middle of the file is skipped and the valid records after it are kept.</p>
+ *
+ * <p>The old records of a guild become garbage, when they take more than half of the file the live records are
+ * copied into a new file that replaces the old one.</p>
+ */
+public class LogSettingsStorage implements SettingsStorage
+{
+	private final Path file;
+	private FileChannel channel;
+	private final Map<Long, Location> index = new HashMap<>(); //Guild id -> location of its latest record.
+	private long liveBytes = 0; //Size of the latest records of every guild.
+	
+	private static final int MAGIC = 0x53425331; //"SBS1", version of the file format.
+	private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES; //Payload length and guild id.
+	private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+	private static final long MIN_COMPACTION_SIZE = 1 << 20; //Files smaller than this are never compacted.
+	private static final Logger logger = LoggerFactory.getLogger(LogSettingsStorage.class);
+	
+	public LogSettingsStorage(Path file) throws IOException
+	{
+		this.file = file;
+		
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		this.readIndex();
+	}
+	
+	/**
+	 * Create the given file with the settings of every guild of the given storage. The settings are imported into a
+	 * temporary file that is moved in place only when the import is complete, so an interrupted import leaves no file
+	 * and is run again on the next start.
+	 *
+	 * @param file
+	 * 		The file to create.
+	 * @param source
+	 * 		The storage whose settings are imported.
+	 *
+	 * @return
+	 * 		The number of guilds imported.
+	 */
+	public static int createFrom(Path file, SettingsStorage source) throws IOException
+	{
+		Path temporaryFile = file.resolveSibling(file.getFileName() + ".import");
+		int count;
+		
+		//Discard what is left of an interrupted import.
+		Files.deleteIfExists(temporaryFile);
+		
+		LogSettingsStorage storage = new LogSettingsStorage(temporaryFile);
+		
+		try
+		{
+			count = storage.importFrom(source);
+		}
+		finally
+		{
+			storage.close();
+		}
+		
+		replaceFile(temporaryFile, file);
+		return count;
+	}
+	
+	@Override
+	public synchronized SettingsData load(String guildID) throws IOException
+	{
+		Location location = this.index.get(Long.parseLong(guildID));
+		
+		if (location == null)
+			return null;
+		
+		return decode(this.readPayload(location));
+	}
+	
+	@Override
+	public synchronized void save(String guildID, SettingsData settingsData) throws IOException
+	{
+		long id = Long.parseLong(guildID);
+		byte[] payload = encode(settingsData);
+		
+		//A bigger record would be rejected when the file is read.
+		if (payload.length > MAX_PAYLOAD_SIZE)
+			throw new IOException(SerpensBot.getMessage("settings_storage_record_too_large", guildID, payload.length, MAX_PAYLOAD_SIZE));
+		
+		byte[] record = createRecord(id, payload);
+		long offset = this.channel.size();
+		
+		this.writeFully(ByteBuffer.wrap(record), offset);
+		
+		this.putLocation(id, new Location(offset, record.length));
+	}
+	
+	/**
+	 * Force the appended records to disk and compact the file if it holds too much garbage.
+	 */
+	@Override
+	public synchronized void sync() throws IOException
+	{
+		this.channel.force(false);
+		
+		long size = this.channel.size();
+		if (size > MIN_COMPACTION_SIZE && size > 2 * (this.liveBytes + Integer.BYTES))
+			this.compact();
+	}
+	
+	@Override
+	public synchronized Collection<String> getGuildIDs()
+	{
+		List<String> guildIDs = new ArrayList<>(this.index.size());
+		
+		for (Long guildID : this.index.keySet())
+			guildIDs.add(Long.toString(guildID));
+		
+		return guildIDs;
+	}
+	
+	@Override
+	public synchronized void close() throws IOException
+	{
+		this.channel.close();
+	}
+	
+	/**
+	 * Copy the latest record of every guild into a new file that replaces the current one.
+	 */
+	private void compact() throws IOException
+	{
+		long oldSize = this.channel.size();
+		Path temporaryFile = this.file.resolveSibling(this.file.getFileName() + ".compact");
+		Map<Long, Location> newIndex = new HashMap<>();
+		
+		try (FileChannel output = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip();
+			while (magic.hasRemaining())
+				output.write(magic);
+			
+			for (Map.Entry<Long, Location> entry : this.index.entrySet())
+			{
+				byte[] record = createRecord(entry.getKey(), this.readPayload(entry.getValue()));
+				ByteBuffer buffer = ByteBuffer.wrap(record);
+				
+				newIndex.put(entry.getKey(), new Location(output.position(), record.length));
+				while (buffer.hasRemaining())
+					output.write(buffer);
+			}
+			
+			output.force(true);
+		}
+		
+		this.channel.close();
+		
+		try
+		{
+			replaceFile(temporaryFile, this.file);
+			
+			this.index.clear();
+			this.index.putAll(newIndex);
+		}
+		finally
+		{
+			//If the move failed the old file is still in place with the old index.
+			this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		
+		logger.info(SerpensBot.getMessage("settings_storage_compacted", oldSize, this.channel.size()));
+	}
+	
+	/**
+	 * Scan the file and build the index. A damaged record is skipped up to the next valid record, a torn record at the
+	 * end of the file is cut off.
+	 */
+	private void readIndex() throws IOException
+	{
+		long size = this.channel.size();
+		
+		//Write the header of a new file.
+		if (size == 0)
+		{
+			this.writeFully(ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip(), 0);
+			return;
+		}
+		
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(this.file));
+		
+		if (data.limit() < Integer.BYTES || data.getInt(0) != MAGIC)
+			throw new IOException(SerpensBot.getMessage("settings_storage_bad_file", this.file));
+		
+		int offset = Integer.BYTES;
+		int end = offset; //End of the last valid record.
+		
+		while (offset < data.limit())
+		{
+			int recordSize = checkRecord(data, offset);
+			
+			if (recordSize > 0)
+			{
+				this.putLocation(data.getLong(offset + Integer.BYTES), new Location(offset, recordSize));
+				offset += recordSize;
+				end = offset;
+				continue;
+			}
+			
+			//Look for the next valid record after the damaged one.
+			int next = offset + 1;
+			
+			while (next < data.limit() && checkRecord(data, next) < 0)
+				next++;
+			
+			if (next >= data.limit())
+				break;
+			
+			logger.warn(SerpensBot.getMessage("settings_storage_skipped", this.file, next - offset, offset));
+			offset = next;
+		}
+		
+		//Everything after the last valid record was torn by a crash.
+		if (end < size)
+		{
+			logger.warn(SerpensBot.getMessage("settings_storage_truncated", this.file, size - end));
+			this.channel.truncate(end);
+		}
+	}
+	
+	/**
+	 * Check the record that starts at the given offset.
+	 *
+	 * @return
+	 * 		The size of the record, or -1 if there is no valid record at the offset.
+	 */
+	private static int checkRecord(ByteBuffer data, int offset)
+	{
+		if (data.limit() - offset < HEADER_SIZE + Integer.BYTES)
+			return -1;
+		
+		int payloadLength = data.getInt(offset);
+		
+		if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_SIZE || data.limit() - offset < HEADER_SIZE + payloadLength + Integer.BYTES)
+			return -1;
+		
+		CRC32 crc = new CRC32();
+		crc.update(data.slice(offset + Integer.BYTES, Long.BYTES + payloadLength));
+		
+		if ((int) crc.getValue() != data.getInt(offset + HEADER_SIZE + payloadLength))
+			return -1;
+		
+		return HEADER_SIZE + payloadLength + Integer.BYTES;
+	}
+	
+	/**
+	 * Point the index entry of the given guild to a new record, its previous record becomes garbage.
+	 */
+	private void putLocation(long guildID, Location location)
+	{
+		Location oldLocation = this.index.put(guildID, location);
+		
+		if (oldLocation != null)
+			this.liveBytes -= oldLocation.size;
+		
+		this.liveBytes += location.size;
+	}
+	
+	private byte[] readPayload(Location location) throws IOException
+	{
+		ByteBuffer record = ByteBuffer.allocate(location.size);
+		this.readFully(record, location.offset);
+		record.flip();
+		
+		int payloadLength = record.getInt();
+		long guildID = record.getLong();
+		byte[] payload = new byte[payloadLength];
+		record.get(payload);
+		
+		CRC32 crc = new CRC32();
+		crc.update(ByteBuffer.allocate(Long.BYTES).putLong(guildID).array());
+		crc.update(payload);
+		
+		if ((int) crc.getValue() != record.getInt())
+			throw new IOException(SerpensBot.getMessage("settings_storage_corrupted_record", guildID, location.offset));
+		
+		return payload;
+	}
+	
+	private void readFully(ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			if (this.channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException();
+		}
+	}
+	
+	private void writeFully(ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+			this.channel.write(buffer, position + buffer.position());
+	}
+	
+	private static void replaceFile(Path source, Path target) throws IOException
+	{
+		try
+		{
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private static byte[] createRecord(long guildID, byte[] payload)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(ByteBuffer.allocate(Long.BYTES).putLong(guildID).array());
+		crc.update(payload);
+		
+		return ByteBuffer.allocate(HEADER_SIZE + payload.length + Integer.BYTES)
+				.putInt(payload.length)
+				.putLong(guildID)
+				.put(payload)
+				.putInt((int) crc.getValue())
+				.array();
+	}
+	
+	/**
+	 * Encode the settings as: prefix count, (module id, prefix)..., state count, (module id, state)..., fingerprint.
+	 */
+	private static byte[] encode(SettingsData settingsData) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		
+		try (DataOutputStream output = new DataOutputStream(bytes))
+		{
+			Map<String, String> modulePrefixes = settingsData.getModulePrefixes();
+			output.writeShort(modulePrefixes.size());
+			
+			for (Map.Entry<String, String> entry : modulePrefixes.entrySet())
+			{
+				output.writeUTF(entry.getKey());
+				output.writeUTF(entry.getValue());
+			}
+			
+			Map<String, Boolean> moduleStates = settingsData.getModuleStates();
+			output.writeShort(moduleStates.size());
+			
+			for (Map.Entry<String, Boolean> entry : moduleStates.entrySet())
+			{
+				output.writeUTF(entry.getKey());
+				output.writeBoolean(entry.getValue());
+			}
+			
+			String fingerprint = settingsData.getCommandsFingerprint();
+			output.writeBoolean(fingerprint != null);
+			
+			if (fingerprint != null)
+				output.writeUTF(fingerprint);
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	private static SettingsData decode(byte[] payload) throws IOException
+	{
+		SettingsData settingsData = new SettingsData();
+		
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload)))
+		{
+			int prefixCount = input.readUnsignedShort();
+			HashMap<String, String> modulePrefixes = new HashMap<>();
+			
+			for (int i = 0; i < prefixCount; i++)
+				modulePrefixes.put(input.readUTF(), input.readUTF());
+			
+			int stateCount = input.readUnsignedShort();
+			HashMap<String, Boolean> moduleStates = new HashMap<>();
+			
+			for (int i = 0; i < stateCount; i++)
+				moduleStates.put(input.readUTF(), input.readBoolean());
+			
+			settingsData.setModulePrefixes(modulePrefixes);
+			settingsData.setModuleStates(moduleStates);
+			
+			if (input.readBoolean())
+				settingsData.setCommandsFingerprint(input.readUTF());
+		}
+		
+		return settingsData;
+	}
+	
+	/**
+	 * Position and size of a record inside the file.
+	 */
+	private static final class Location
+	{
+		private final long offset;
+		private final int size;
+		
+		private Location(long offset, int size)
+		{
+			this.offset = offset;
+			this.size = size;
+		}
+	}
+}
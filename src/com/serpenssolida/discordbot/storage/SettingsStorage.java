@@ -0,0 +1,88 @@
+package com.serpenssolida.discordbot.storage;
+
+import com.serpenssolida.discordbot.module.settings.SettingsData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Backend where the settings of the guilds are stored. The backend is selected with the "settingsStorage" field of
+ * "bot.json".
+ */
+public interface SettingsStorage extends Closeable
+{
+	/**
+	 * Read the settings of the given guild.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 *
+	 * @return
+	 * 		The settings of the guild, or null if the guild has no settings.
+	 *
+	 * @throws IOException
+	 * 		if the settings could not be read.
+	 */
+	SettingsData load(String guildID) throws IOException;
+	
+	/**
+	 * Write the settings of the given guild.
+	 *
+	 * @param guildID
+	 * 		The id of the guild.
+	 * @param settingsData
+	 * 		The settings of the guild.
+	 *
+	 * @throws IOException
+	 * 		if the settings could not be written.
+	 */
+	void save(String guildID, SettingsData settingsData) throws IOException;
+	
+	/**
+	 * Make the settings written so far durable. Called after every batch of writes.
+	 *
+	 * @throws IOException
+	 * 		if the settings could not be synchronized.
+	 */
+	default void sync() throws IOException {}
+	
+	/**
+	 * @return The ids of every guild that has settings in this storage.
+	 *
+	 * @throws IOException
+	 * 		if the ids could not be read.
+	 */
+	Collection<String> getGuildIDs() throws IOException;
+	
+	/**
+	 * Copy the settings of every guild from the given storage into this one.
+	 *
+	 * @param source
+	 * 		The storage to copy the settings from.
+	 *
+	 * @return
+	 * 		The number of guilds copied.
+	 *
+	 * @throws IOException
+	 * 		if the settings could not be copied.
+	 */
+	default int importFrom(SettingsStorage source) throws IOException
+	{
+		int count = 0;
+		
+		for (String guildID : source.getGuildIDs())
+		{
+			SettingsData settingsData = source.load(guildID);
+			
+			if (settingsData == null)
+				continue;
+			
+			this.save(guildID, settingsData);
+			count++;
+		}
+		
+		this.sync();
+		return count;
+	}
+}
@@ -0,0 +1,205 @@
+package com.serpenssolida.discordbot.webserver;
+
+import com.google.gson.Gson;
+import com.serpenssolida.discordbot.webserver.data.LogStreamMessage;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the new lines of the log to the connected admin sessions.
+ *
+ * <p>A single background thread reads the log from a {@link LogSource} and pushes the new lines to every session, so
+ * the cost of reading the log does not depend on the number of sessions. A new session first receives the last lines
+ * of the log, every session receives them again when the log cannot be continued from the previous read. The messages
+ * are sent asynchronously: a session that has too many messages still being sent does not receive the new lines, it is
+ * told how many lines it skipped with its next message instead.</p>
+ */
+public class LogBroadcaster
+{
+	private final LogSource source;
+	private final Map<Session, Subscriber> subscribers = new ConcurrentHashMap<>();
+	private final ArrayDeque<String> recentLines = new ArrayDeque<>(); //Last lines of the log, sent to the new sessions.
+	private final ScheduledExecutorService executor;
+	private String cursor; //Cursor of the next read of the log, null to start from the last lines.
+	
+	private static final int RECENT_LINES = 1000; //Number of lines sent to a new session.
+	private static final int MAX_PENDING_MESSAGES = 16; //Messages that can be in flight to a session before it skips lines.
+	private static final long POLL_INTERVAL = 1000; //Milliseconds between two reads of the log.
+	
+	private static final Gson gson = new Gson();
+	private static final Logger logger = LoggerFactory.getLogger(LogBroadcaster.class);
+	
+	/**
+	 * A session that receives the log lines.
+	 */
+	private static final class Subscriber implements WriteCallback
+	{
+		private final Session session;
+		private final AtomicInteger pendingMessages = new AtomicInteger();
+		private int skippedLines; //Lines not sent because the session was too slow, guarded by the broadcaster.
+		
+		private Subscriber(Session session)
+		{
+			this.session = session;
+		}
+		
+		/**
+		 * Send the given lines, or skip them if the session has too many messages in flight.
+		 */
+		private void send(List<String> lines, boolean reset)
+		{
+			if (!reset && this.pendingMessages.get() >= LogBroadcaster.MAX_PENDING_MESSAGES)
+			{
+				this.skippedLines += lines.size();
+				return;
+			}
+			
+			String message = gson.toJson(new LogStreamMessage(lines, this.skippedLines, reset));
+			this.skippedLines = 0;
+			this.pendingMessages.incrementAndGet();
+			
+			try
+			{
+				this.session.getRemote().sendString(message, this);
+			}
+			catch (RuntimeException e)
+			{
+				//The session is closing, it will be removed by its close event.
+				this.pendingMessages.decrementAndGet();
+			}
+		}
+		
+		@Override
+		public void writeFailed(Throwable x)
+		{
+			this.pendingMessages.decrementAndGet();
+		}
+		
+		@Override
+		public void writeSuccess()
+		{
+			this.pendingMessages.decrementAndGet();
+		}
+	}
+	
+	public LogBroadcaster(LogSource source)
+	{
+		this.source = source;
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "SerpensBot-LogStream");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		this.executor.scheduleWithFixedDelay(this::poll, LogBroadcaster.POLL_INTERVAL, LogBroadcaster.POLL_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Start sending the log to the given session. The session receives the last lines of the log first.
+	 *
+	 * @param session
+	 * 		The session of an authorized user.
+	 */
+	public synchronized void subscribe(Session session)
+	{
+		//Bring the recent lines up to date, so the new session does not receive the same lines twice.
+		if (this.subscribers.isEmpty())
+			this.reset();
+		
+		this.broadcast(this.readNewLines());
+		
+		Subscriber subscriber = new Subscriber(session);
+		this.subscribers.put(session, subscriber);
+		subscriber.send(new ArrayList<>(this.recentLines), true);
+	}
+	
+	/**
+	 * Stop sending the log to the given session.
+	 *
+	 * @param session
+	 * 		The session that has been closed.
+	 */
+	public void unsubscribe(Session session)
+	{
+		this.subscribers.remove(session);
+	}
+	
+	/**
+	 * Read the new lines of the log and send them to every session. The log is not read while no session is connected.
+	 */
+	private synchronized void poll()
+	{
+		if (this.subscribers.isEmpty())
+			return;
+		
+		this.broadcast(this.readNewLines());
+	}
+	
+	private void broadcast(LogChunk chunk)
+	{
+		if (chunk.getLines().isEmpty() && !chunk.isReset())
+			return;
+		
+		for (Subscriber subscriber : this.subscribers.values())
+		{
+			if (subscriber.session.isOpen())
+				subscriber.send(chunk.getLines(), chunk.isReset());
+			else
+				this.subscribers.remove(subscriber.session);
+		}
+	}
+	
+	/**
+	 * @return The lines written after the previous read, also added to the recent lines. If the read does not continue
+	 * 		the previous one the recent lines are replaced.
+	 */
+	private LogChunk readNewLines()
+	{
+		try
+		{
+			LogChunk chunk = this.source.read(this.cursor);
+			this.cursor = chunk.getCursor();
+			
+			if (chunk.isReset())
+				this.recentLines.clear();
+			
+			for (String line : chunk.getLines())
+			{
+				if (this.recentLines.size() == LogBroadcaster.RECENT_LINES)
+					this.recentLines.removeFirst();
+				
+				this.recentLines.addLast(line);
+			}
+			
+			return chunk;
+		}
+		catch (IOException e)
+		{
+			logger.error(e.getLocalizedMessage(), e);
+			return new LogChunk(List.of(), this.cursor);
+		}
+	}
+	
+	/**
+	 * Forget the recent lines, the next read starts from the last lines of the log.
+	 */
+	private void reset()
+	{
+		this.cursor = null;
+		this.recentLines.clear();
+	}
+}
@@ -0,0 +1,41 @@
+package com.serpenssolida.discordbot.webserver;
+
+import java.util.List;
+
+/**
+ * Lines read from the log and the cursor of the next read. A chunk marked as reset does not continue the previous read,
+ * the reader must replace the lines it has with the lines of the chunk.
+ */
+public final class LogChunk
+{
+	private final List<String> lines;
+	private final String cursor;
+	private final boolean reset;
+	
+	public LogChunk(List<String> lines, String cursor)
+	{
+		this(lines, cursor, false);
+	}
+	
+	public LogChunk(List<String> lines, String cursor, boolean reset)
+	{
+		this.lines = lines;
+		this.cursor = cursor;
+		this.reset = reset;
+	}
+	
+	public List<String> getLines()
+	{
+		return this.lines;
+	}
+	
+	public String getCursor()
+	{
+		return this.cursor;
+	}
+	
+	public boolean isReset()
+	{
+		return this.reset;
+	}
+}
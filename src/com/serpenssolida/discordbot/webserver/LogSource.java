@@ -0,0 +1,21 @@
+package com.serpenssolida.discordbot.webserver;
+
+import java.io.IOException;
+
+/**
+ * Source of the log lines served by the web server.
+ */
+public interface LogSource
+{
+	/**
+	 * Read the lines written after the given cursor. When the lines after the cursor cannot be read, or the cursor is
+	 * null, the chunk contains the last lines of the log and is marked as reset.
+	 *
+	 * @param cursor
+	 * 		The cursor returned by the previous read, or null to read the last lines of the log.
+	 *
+	 * @return
+	 * 		The lines read and the cursor of the next read.
+	 */
+	LogChunk read(String cursor) throws IOException;
+}
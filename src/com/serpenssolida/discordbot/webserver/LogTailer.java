@@ -0,0 +1,157 @@
+package com.serpenssolida.discordbot.webserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * Reads the lines appended to a log file after a cursor.
+ *
+ * <p>A cursor is an opaque string made of the identity of the file and a byte offset, so a read costs only the bytes
+ * written since the previous one. When the file is rotated (renamed and replaced by a new file, like
+ * {@code DailyRollingFileAppender} does) or truncated, the identity or the size of the file do not match the cursor
+ * anymore and the new file is read from the start.</p>
+ */
+public class LogTailer implements LogSource
+{
+	private final Path file;
+	
+	private static final int MAX_READ = 1024 * 1024; //Maximum number of bytes returned by a read.
+	private static final int INITIAL_READ = 256 * 1024; //Number of bytes at the end of the file returned by a read without cursor.
+	
+	public LogTailer(Path file)
+	{
+		this.file = file;
+	}
+	
+	/**
+	 * Read the complete lines written after the given cursor. A line that is still being written is left for the next
+	 * read.
+	 *
+	 * @param cursor
+	 * 		The cursor returned by the previous read, or null to read the last lines of the file.
+	 *
+	 * @return
+	 * 		The lines read and the cursor of the next read, marked as reset if the read does not continue the given
+	 * 		cursor.
+	 */
+	@Override
+	public LogChunk read(String cursor) throws IOException
+	{
+		if (!Files.exists(this.file))
+			return new LogChunk(List.of(), cursor);
+		
+		try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ))
+		{
+			int fileID = this.getFileID();
+			long size = channel.size();
+			long[] position = LogTailer.parseCursor(cursor);
+			long offset;
+			boolean reset = position == null || position[0] != fileID || position[1] > size;
+			
+			if (position == null)
+				offset = Math.max(0, size - LogTailer.INITIAL_READ); //First read, start from the last lines.
+			else if (position[0] != fileID || position[1] > size)
+				offset = 0; //The file has been rotated or truncated.
+			else
+				offset = position[1];
+			
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - offset, LogTailer.MAX_READ));
+			
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer, offset + buffer.position()) <= 0)
+					break;
+			}
+			
+			byte[] bytes = buffer.array();
+			int length = buffer.position();
+			
+			//Stop at the end of the last complete line, unless a single line fills the whole read.
+			int end = LogTailer.lastIndexOf(bytes, length, (byte) '\n') + 1;
+			
+			if (end == 0 && length == LogTailer.MAX_READ)
+				end = length;
+			
+			//A read that does not start at the beginning of a line skips the first partial line.
+			int start = 0;
+			
+			if (position == null && offset > 0)
+				start = Math.min(LogTailer.indexOf(bytes, end, (byte) '\n') + 1, end);
+			
+			List<String> lines = new String(bytes, start, end - start, StandardCharsets.UTF_8).lines().toList();
+			return new LogChunk(lines, LogTailer.formatCursor(fileID, offset + end), reset);
+		}
+	}
+	
+	/**
+	 * @return A value that changes when the file is replaced by another file.
+	 */
+	private int getFileID() throws IOException
+	{
+		BasicFileAttributes attributes = Files.readAttributes(this.file, BasicFileAttributes.class);
+		
+		//The file key is the inode on Unix, the file systems without file keys keep the creation time of the file.
+		Object fileKey = attributes.fileKey();
+		return fileKey != null ? fileKey.hashCode() : attributes.creationTime().hashCode();
+	}
+	
+	private static String formatCursor(int fileID, long offset)
+	{
+		return Integer.toHexString(fileID) + "-" + Long.toHexString(offset);
+	}
+	
+	/**
+	 * @return The file id and the offset of the given cursor, or null if the cursor is missing or not valid.
+	 */
+	private static long[] parseCursor(String cursor)
+	{
+		if (cursor == null)
+			return null;
+		
+		int separator = cursor.indexOf('-');
+		
+		if (separator < 0)
+			return null;
+		
+		try
+		{
+			long fileID = Integer.parseUnsignedInt(cursor.substring(0, separator), 16);
+			long offset = Long.parseLong(cursor.substring(separator + 1), 16);
+			
+			return offset >= 0 ? new long[] {(int) fileID, offset} : null;
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+	
+	private static int indexOf(byte[] bytes, int length, byte value)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			if (bytes[i] == value)
+				return i;
+		}
+		
+		return -1;
+	}
+	
+	private static int lastIndexOf(byte[] bytes, int length, byte value)
+	{
+		for (int i = length - 1; i >= 0; i--)
+		{
+			if (bytes[i] == value)
+				return i;
+		}
+		
+		return -1;
+	}
+}
@@ -0,0 +1,55 @@
+package com.serpenssolida.discordbot.webserver;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.HttpCookie;
+
+/**
+ * WebSocket that streams the log to the admin page. The connection is accepted only if the "token" cookie of the
+ * request is authorized, the lines are sent by the {@link LogBroadcaster}.
+ */
+@WebSocket
+public class LogWebSocket
+{
+	private final LogBroadcaster broadcaster;
+	
+	private static final Logger logger = LoggerFactory.getLogger(LogWebSocket.class);
+	
+	public LogWebSocket(LogBroadcaster broadcaster)
+	{
+		this.broadcaster = broadcaster;
+	}
+	
+	@OnWebSocketConnect
+	public void onConnect(Session session)
+	{
+		String token = null;
+		
+		for (HttpCookie cookie : session.getUpgradeRequest().getCookies())
+		{
+			if ("token".equals(cookie.getName()))
+				token = cookie.getValue();
+		}
+		
+		if (!SerpensBotWebServer.isAuthorized(token))
+		{
+			logger.info("Token non presente o non autorizzato. Richiesta di log annullata.");
+			session.close(StatusCode.POLICY_VIOLATION, "You must be logged in!");
+			return;
+		}
+		
+		this.broadcaster.subscribe(session);
+	}
+	
+	@OnWebSocketClose
+	public void onClose(Session session, int statusCode, String reason)
+	{
+		this.broadcaster.unsubscribe(session);
+	}
+}
@@ -0,0 +1,117 @@
+package com.serpenssolida.discordbot.webserver;
+
+import com.serpenssolida.discordbot.log.LogRingBuffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves the log from the {@link LogRingBuffer} filled by the log appender. A cursor is the sequence number of the next
+ * event, so finding the new lines costs a single lookup. A read without cursor, or with a cursor of events that are no
+ * longer in the buffer, cannot continue the previous read: it returns the last lines of the log file followed by the
+ * events of the buffer, marked as reset so the reader replaces its lines. The file is cut before the oldest event
+ * returned from the buffer, so no event is returned twice.
+ */
+public class RingBufferLogSource implements LogSource
+{
+	private final LogRingBuffer buffer;
+	private final LogSource history;
+	
+	private static final String CURSOR_PREFIX = "s";
+	private static final int MAX_EVENTS = 4096; //Maximum number of events returned by a read.
+	
+	/**
+	 * @param buffer
+	 * 		The buffer filled by the log appender.
+	 * @param history
+	 * 		The source of the events that are no longer in the buffer, written with the same layout.
+	 */
+	public RingBufferLogSource(LogRingBuffer buffer, LogSource history)
+	{
+		this.buffer = buffer;
+		this.history = history;
+	}
+	
+	@Override
+	public LogChunk read(String cursor) throws IOException
+	{
+		long sequence = RingBufferLogSource.parseCursor(cursor);
+		
+		//The events after the cursor are still in the buffer.
+		if (sequence >= this.buffer.getOldestSequence() && sequence <= this.buffer.getNextSequence())
+		{
+			List<LogRingBuffer.Entry> entries = this.buffer.read(sequence, RingBufferLogSource.MAX_EVENTS);
+			return RingBufferLogSource.createChunk(List.of(), entries, sequence, false);
+		}
+		
+		//The file is read first: the events logged meanwhile are then found in the buffer, after the cut of the file.
+		List<String> fileLines = this.history.read(null).getLines();
+		long fromSequence = Math.max(this.buffer.getOldestSequence(), this.buffer.getNextSequence() - RingBufferLogSource.MAX_EVENTS);
+		List<LogRingBuffer.Entry> entries = this.buffer.read(fromSequence, RingBufferLogSource.MAX_EVENTS);
+		
+		if (!entries.isEmpty())
+			fromSequence = entries.get(0).getSequence();
+		
+		return RingBufferLogSource.createChunk(RingBufferLogSource.cutBefore(fileLines, entries), entries, fromSequence, true);
+	}
+	
+	/**
+	 * @param historyLines
+	 * 		The lines of the file that come before the events.
+	 * @param entries
+	 * 		The events read from the buffer.
+	 * @param sequence
+	 * 		The sequence number of the first event, the cursor of the next read if there are no events.
+	 */
+	private static LogChunk createChunk(List<String> historyLines, List<LogRingBuffer.Entry> entries, long sequence, boolean reset)
+	{
+		List<String> lines = new ArrayList<>(historyLines);
+		
+		for (LogRingBuffer.Entry entry : entries)
+		{
+			lines.addAll(entry.getText().lines().toList());
+			sequence = entry.getSequence() + 1;
+		}
+		
+		return new LogChunk(lines, RingBufferLogSource.CURSOR_PREFIX + sequence, reset);
+	}
+	
+	/**
+	 * @return The lines of the file written before the first of the given events. If the event is not found the file
+	 * does not reach back to it and no line is older than the events.
+	 */
+	private static List<String> cutBefore(List<String> fileLines, List<LogRingBuffer.Entry> entries)
+	{
+		if (entries.isEmpty())
+			return fileLines;
+		
+		String firstLine = entries.get(0).getText().lines().findFirst().orElse("");
+		
+		for (int i = fileLines.size() - 1; i >= 0; i--)
+		{
+			if (fileLines.get(i).equals(firstLine))
+				return fileLines.subList(0, i);
+		}
+		
+		return List.of();
+	}
+	
+	/**
+	 * @return The sequence number of the given cursor, or -1 if the cursor is missing or not valid.
+	 */
+	private static long parseCursor(String cursor)
+	{
+		if (cursor == null || !cursor.startsWith(RingBufferLogSource.CURSOR_PREFIX))
+			return -1;
+		
+		try
+		{
+			return Long.parseLong(cursor.substring(RingBufferLogSource.CURSOR_PREFIX.length()));
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+}
@@ -3,9 +3,14 @@ package com.serpenssolida.discordbot.webserver;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.serpenssolida.discordbot.SerpensBot;
+import com.serpenssolida.discordbot.interaction.InteractionRegistry;
+import com.serpenssolida.discordbot.log.LogQuery;
+import com.serpenssolida.discordbot.log.LogRingBuffer;
+import com.serpenssolida.discordbot.log.LogSearch;
+import com.serpenssolida.discordbot.log.LogSearchResult;
+import com.serpenssolida.discordbot.modal.ModalCallbackStore;
 import com.serpenssolida.discordbot.webserver.data.*;
 import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.ModelAndView;
@@ -17,19 +22,27 @@ import spark.template.velocity.VelocityTemplateEngine;
 import java.io.*;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SerpensBotWebServer
 {
 	private static String password = "";
-	private static boolean running = false;
-	private static Set<UUID> tokens = new HashSet<>();
+	private static volatile boolean running = false;
+	private static final Set<UUID> tokens = ConcurrentHashMap.newKeySet();
+	private static final Object botLock = new Object(); //Serializes restart and stop requests.
 	
 	private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 	private static final Logger logger = LoggerFactory.getLogger(SerpensBotWebServer.class);
-	private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+	private static final LogTailer logTailer = new LogTailer(Paths.get("logs", "bot.log"));
+	private static LogSource logSource = SerpensBotWebServer.logTailer;
+	private static LogBroadcaster logBroadcaster;
+	private static final LogSearch logSearch = new LogSearch(Paths.get("logs"), "bot.log");
+	private static final DateTimeFormatter logDateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	private static final int MAX_SEARCH_LIMIT = 10000; //Maximum number of events returned by a log search.
 	
 	private static final String LOGIN_PATH = "/login";
 	private static final String RESTART_PATH = "/restart";
@@ -37,6 +50,9 @@ public class SerpensBotWebServer
 	private static final String STATUS_PATH = "/status";
 	private static final String TOKEN_PATH = "/token";
 	private static final String LOG_PATH = "/log";
+	private static final String LOG_STREAM_PATH = "/log/stream";
+	private static final String LOG_SEARCH_PATH = "/log/search";
+	private static final String COMMAND_SYNC_PATH = "/commands/sync";
 	
 	private static final String HOME_PATH = "/";
 	private static final String ADMIN_PATH = "/admin";
@@ -58,13 +74,26 @@ public class SerpensBotWebServer
 		
 		Spark.port(port);
 		
+		//Serve the recent log from memory if the ring buffer appender is configured.
+		LogRingBuffer logBuffer = LogRingBuffer.getInstalled();
+		
+		if (logBuffer != null)
+			SerpensBotWebServer.logSource = new RingBufferLogSource(logBuffer, SerpensBotWebServer.logTailer);
+		
+		//WebSocket paths, they must be mapped before the other paths.
+		SerpensBotWebServer.logBroadcaster = new LogBroadcaster(SerpensBotWebServer.logSource);
+		Spark.webSocket(SerpensBotWebServer.LOG_STREAM_PATH, new LogWebSocket(SerpensBotWebServer.logBroadcaster));
+		
 		//API paths.
 		Spark.get(SerpensBotWebServer.TOKEN_PATH, SerpensBotWebServer::checkToken);
 		Spark.get(SerpensBotWebServer.STATUS_PATH, SerpensBotWebServer::botStatus);
 		Spark.get(SerpensBotWebServer.LOG_PATH, SerpensBotWebServer::getLog);
+		Spark.get(SerpensBotWebServer.LOG_SEARCH_PATH, SerpensBotWebServer::searchLog);
 		Spark.post(SerpensBotWebServer.LOGIN_PATH, SerpensBotWebServer::login);
 		Spark.post(SerpensBotWebServer.RESTART_PATH, SerpensBotWebServer::restartBot);
 		Spark.post(SerpensBotWebServer.STOP_PATH, SerpensBotWebServer::stopBot);
+		Spark.get(SerpensBotWebServer.COMMAND_SYNC_PATH, SerpensBotWebServer::commandSyncStatus);
+		Spark.post(SerpensBotWebServer.COMMAND_SYNC_PATH, SerpensBotWebServer::syncCommands);
 		
 		//Pages paths.
 		Spark.get(SerpensBotWebServer.HOME_PATH, SerpensBotWebServer::loginPage);
@@ -85,10 +114,10 @@ public class SerpensBotWebServer
 			TokenData tokenData = gson.fromJson(reader, TokenData.class);
 			
 			//Check if the data was read correctly.
-			if (tokenData == null)
+			if (tokenData == null || tokenData.getTokens() == null)
 				return;
 			
-			SerpensBotWebServer.tokens = tokenData.getTokens();
+			SerpensBotWebServer.tokens.addAll(tokenData.getTokens());
 		}
 		catch (FileNotFoundException e)
 		{
@@ -100,7 +129,7 @@ public class SerpensBotWebServer
 		}
 	}
 	
-	public static void saveTokens()
+	public static synchronized void saveTokens()
 	{
 		File tokensFile = new File(Paths.get("server", "tokens.json").toString());
 		
@@ -190,14 +219,11 @@ public class SerpensBotWebServer
 		}
 		
 		logger.info("Il bot verrà restartato.");
-		List<ListenerAdapter> modules = SerpensBot.getApi()
-				.getRegisteredListeners()
-				.stream()
-				.map(ListenerAdapter.class::cast)
-				.toList();
-		modules.forEach(listenerAdapter -> SerpensBot.getApi().removeEventListener(listenerAdapter));
-		SerpensBot.getApi().shutdown();
-		SerpensBot.start();
+		synchronized (SerpensBotWebServer.botLock)
+		{
+			SerpensBot.stop();
+			SerpensBot.start();
+		}
 		
 		return "{}";
 	}
@@ -218,11 +244,52 @@ public class SerpensBotWebServer
 		}
 		
 		logger.info("Il bot verrà arrestato.");
-		SerpensBot.getApi().shutdown();
+		synchronized (SerpensBotWebServer.botLock)
+		{
+			SerpensBot.stop();
+		}
 		
 		return "{}";
 	}
 	
+	private static Object commandSyncStatus(Request request, Response response)
+	{
+		//Get user's token status.
+		TokenStatus tokenStatus = SerpensBotWebServer.getTokenStatus(request);
+		
+		//Check user's token status.
+		if (tokenStatus != TokenStatus.AUTHORIZED)
+		{
+			response.status(401);
+			
+			return gson.toJson(new ErrorResponseBody("You must be logged in!"));
+		}
+		
+		return gson.toJson(SerpensBot.getCommandSyncScheduler().getProgress());
+	}
+	
+	private static Object syncCommands(Request request, Response response)
+	{
+		//Get user's token status.
+		TokenStatus tokenStatus = SerpensBotWebServer.getTokenStatus(request);
+		
+		//Check user's token status.
+		if (tokenStatus != TokenStatus.AUTHORIZED)
+		{
+			logger.info("Token non presente o non autorizzato. Richiesta di sincronizzazione dei comandi annullata.");
+			response.status(401);
+			response.removeCookie("token");
+			
+			return gson.toJson(new ErrorResponseBody("You must be logged in!"));
+		}
+		
+		logger.info("I comandi di tutti i server verranno sincronizzati.");
+		//The admin asked for a synchronization, so the commands are sent even where they look unchanged.
+		SerpensBot.updateAllGuildsCommands(true);
+		
+		return gson.toJson(SerpensBot.getCommandSyncScheduler().getProgress());
+	}
+	
 	private static Object getLog(Request request, Response response)
 	{
 		//Get user's token status.
@@ -238,32 +305,93 @@ public class SerpensBotWebServer
 			return gson.toJson(new ErrorResponseBody("You must be logged in!"));
 		}
 		
-		//Get last update param.
-		String strLastDate = request.queryParams("lastUpdate");
+		//Read only the lines written after the cursor of the previous request.
+		LogChunk chunk;
 		
-		ArrayList<String> logLines = new ArrayList<>();
-		File logFile = Paths.get("logs", "bot.log").toFile();
+		try
+		{
+			chunk = SerpensBotWebServer.logSource.read(request.queryParams("cursor"));
+		}
+		catch (IOException e)
+		{
+			logger.error("", e);
+			response.status(500);
+			
+			return gson.toJson(new ErrorResponseBody(e.getMessage()));
+		}
 		
-		LocalDateTime lastDate = LocalDateTime.MIN;
+		//Send the data.
+		LogResponseBody logData = new LogResponseBody(chunk.getLines(), chunk.getCursor(), chunk.isReset());
+		return gson.toJson(logData);
+	}
+	
+	private static Object searchLog(Request request, Response response)
+	{
+		//Get user's token status.
+		TokenStatus tokenStatus = SerpensBotWebServer.getTokenStatus(request);
 		
-		//Read lines from the logs and buffer them.
-		try (BufferedReader reader = new BufferedReader(new FileReader(logFile)))
+		//Check user's token status.
+		if (tokenStatus != TokenStatus.AUTHORIZED)
 		{
-			final LocalDateTime lastUpdate = (strLastDate != null ? LocalDateTime.parse(strLastDate, SerpensBotWebServer.dateTimeFormatter) : null);
+			logger.info("Token non presente o non autorizzato.  Ricerca nel log annullata.");
+			response.status(401);
+			response.removeCookie("token");
 			
-			//Collect all logs beofore the last update.
-			for (String line : reader.lines().toList())
+			return gson.toJson(new ErrorResponseBody("You must be logged in!"));
+		}
+		
+		LogQuery query = new LogQuery();
+		
+		//Read the filters of the search.
+		try
+		{
+			String from = request.queryParams("from");
+			String to = request.queryParams("to");
+			String levels = request.queryParams("level");
+			String limit = request.queryParams("limit");
+			
+			if (from != null && !from.isBlank())
+				query.setFrom(SerpensBotWebServer.parseLogDate(from));
+			
+			if (to != null && !to.isBlank())
+				query.setTo(SerpensBotWebServer.parseLogDate(to));
+			
+			if (levels != null && !levels.isBlank())
 			{
-				try
+				for (String level : levels.split(","))
 				{
-					String strDate = line.substring(1, 20);
-					lastDate = LocalDateTime.parse(strDate, dateTimeFormatter);
+					if (!query.addLevel(level))
+						throw new IllegalArgumentException("Unknown level: " + level.trim());
 				}
-				catch (DateTimeParseException | StringIndexOutOfBoundsException ignored){}
-				
-				if (lastUpdate == null || lastUpdate.isBefore(lastDate))
-					logLines.add(line);
 			}
+			
+			if (limit != null && !limit.isBlank())
+				query.setLimit(Math.min(Integer.parseInt(limit.trim()), SerpensBotWebServer.MAX_SEARCH_LIMIT));
+			
+			if (query.getLimit() <= 0)
+				throw new IllegalArgumentException("The limit must be positive!");
+		}
+		catch (DateTimeParseException e)
+		{
+			response.status(400);
+			return gson.toJson(new ErrorResponseBody("Dates must be in the format yyyy-MM-dd HH:mm:ss!"));
+		}
+		catch (IllegalArgumentException e)
+		{
+			response.status(400);
+			return gson.toJson(new ErrorResponseBody(e instanceof NumberFormatException ? "The limit must be a number!" : e.getMessage()));
+		}
+		
+		query.setTag(SerpensBotWebServer.emptyToNull(request.queryParams("tag")));
+		query.setGuild(SerpensBotWebServer.emptyToNull(request.queryParams("guild")));
+		query.setText(SerpensBotWebServer.emptyToNull(request.queryParams("text")));
+		
+		//Read only the blocks of the log that can contain the events.
+		LogSearchResult result;
+		
+		try
+		{
+			result = SerpensBotWebServer.logSearch.search(query);
 		}
 		catch (IOException e)
 		{
@@ -274,8 +402,18 @@ public class SerpensBotWebServer
 		}
 		
 		//Send the data.
-		LogResponseBody logData = new LogResponseBody(logLines, lastDate.format(SerpensBotWebServer.dateTimeFormatter));
-		return gson.toJson(logData);
+		LogSearchResponseBody searchData = new LogSearchResponseBody(result.getLines(), result.getScannedBlocks(), result.getTotalBlocks(), result.isTruncated());
+		return gson.toJson(searchData);
+	}
+	
+	private static long parseLogDate(String date)
+	{
+		return LocalDateTime.parse(date.trim(), SerpensBotWebServer.logDateFormatter).atZone(ZoneId.systemDefault()).toEpochSecond();
+	}
+	
+	private static String emptyToNull(String value)
+	{
+		return value == null || value.isBlank() ? null : value.trim();
 	}
 	
 	private static Object botStatus(Request request, Response response)
@@ -291,9 +429,30 @@ public class SerpensBotWebServer
 			return gson.toJson(new ErrorResponseBody("You must be logged in!"));
 		}
 		
-		JDA.Status botStatus = SerpensBot.getApi().getStatus();
+		List<JDA> jdaShards = SerpensBot.getShards();
+		List<ShardStatusResponseBody> shards = new ArrayList<>(jdaShards.size());
+		JDA.Status botStatus = jdaShards.isEmpty() ? JDA.Status.SHUTDOWN : JDA.Status.CONNECTED;
 		
-		return gson.toJson(new BotStatusResponseBody(botStatus));
+		for (JDA shard : jdaShards)
+		{
+			JDA.Status shardStatus = shard.getStatus();
+			long cachedMembers = shard.getGuildCache().stream().mapToLong(guild -> guild.getMemberCache().size()).sum();
+			shards.add(new ShardStatusResponseBody(shard.getShardInfo().getShardId(), shardStatus, shard.getGuilds().size(), shard.getGatewayPing(), cachedMembers));
+			
+			//The bot is connected only if every shard is connected.
+			if (shardStatus != JDA.Status.CONNECTED && botStatus == JDA.Status.CONNECTED)
+				botStatus = shardStatus;
+		}
+		
+		BotStatusResponseBody body = new BotStatusResponseBody(
+				botStatus,
+				InteractionRegistry.getLiveGroupCount(),
+				ModalCallbackStore.getCompletedCount(),
+				ModalCallbackStore.getExpiredCount(),
+				ModalCallbackStore.getEvictedCount(),
+				shards);
+		
+		return gson.toJson(body);
 	}
 	
 	private static Object adminPage(Request request, Response response)
@@ -322,8 +481,22 @@ public class SerpensBotWebServer
 	
 	public static TokenStatus getTokenStatus(Request request)
 	{
-		String tokenString = request.cookie("token");
-		
+		return SerpensBotWebServer.getTokenStatus(request.cookie("token"));
+	}
+	
+	/**
+	 * @param tokenString
+	 * 		The token sent by the user.
+	 *
+	 * @return True if the given token has been authorized.
+	 */
+	public static boolean isAuthorized(String tokenString)
+	{
+		return SerpensBotWebServer.getTokenStatus(tokenString) == TokenStatus.AUTHORIZED;
+	}
+	
+	private static TokenStatus getTokenStatus(String tokenString)
+	{
 		try
 		{
 			UUID token = UUID.fromString(tokenString);
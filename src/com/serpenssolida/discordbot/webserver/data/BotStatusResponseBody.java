@@ -2,17 +2,54 @@ package com.serpenssolida.discordbot.webserver.data;
 
 import net.dv8tion.jda.api.JDA;
 
+import java.util.List;
+
 public class BotStatusResponseBody
 {
 	private final JDA.Status status;
+	private final int liveInteractionGroups;
+	private final long completedModals;
+	private final long expiredModals;
+	private final long evictedModals;
+	private final List<ShardStatusResponseBody> shards;
 	
-	public BotStatusResponseBody(JDA.Status status)
+	public BotStatusResponseBody(JDA.Status status, int liveInteractionGroups, long completedModals, long expiredModals, long evictedModals, List<ShardStatusResponseBody> shards)
 	{
 		this.status = status;
+		this.liveInteractionGroups = liveInteractionGroups;
+		this.completedModals = completedModals;
+		this.expiredModals = expiredModals;
+		this.evictedModals = evictedModals;
+		this.shards = shards;
 	}
 	
 	public JDA.Status getStatus()
 	{
 		return status;
 	}
+	
+	public int getLiveInteractionGroups()
+	{
+		return liveInteractionGroups;
+	}
+	
+	public long getCompletedModals()
+	{
+		return completedModals;
+	}
+	
+	public long getExpiredModals()
+	{
+		return expiredModals;
+	}
+	
+	public long getEvictedModals()
+	{
+		return evictedModals;
+	}
+	
+	public List<ShardStatusResponseBody> getShards()
+	{
+		return shards;
+	}
 }
@@ -5,12 +5,14 @@ import java.util.List;
 public final class LogResponseBody
 {
 	private final List<String> lines;
-	private final String updateDate;
+	private final String cursor;
+	private final boolean reset;
 	
-	public LogResponseBody(List<String> lines, String updateDate)
+	public LogResponseBody(List<String> lines, String cursor, boolean reset)
 	{
 		this.lines = lines;
-		this.updateDate = updateDate;
+		this.cursor = cursor;
+		this.reset = reset;
 	}
 	
 	public List<String> getLines()
@@ -18,8 +20,13 @@ public final class LogResponseBody
 		return this.lines;
 	}
 	
-	public String getUpdateDate()
+	public String getCursor()
 	{
-		return this.updateDate;
+		return this.cursor;
+	}
+	
+	public boolean isReset()
+	{
+		return this.reset;
 	}
 }
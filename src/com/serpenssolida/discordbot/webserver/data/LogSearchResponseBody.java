@@ -0,0 +1,39 @@
+package com.serpenssolida.discordbot.webserver.data;
+
+import java.util.List;
+
+public final class LogSearchResponseBody
+{
+	private final List<String> lines;
+	private final int scannedBlocks;
+	private final int totalBlocks;
+	private final boolean truncated;
+	
+	public LogSearchResponseBody(List<String> lines, int scannedBlocks, int totalBlocks, boolean truncated)
+	{
+		this.lines = lines;
+		this.scannedBlocks = scannedBlocks;
+		this.totalBlocks = totalBlocks;
+		this.truncated = truncated;
+	}
+	
+	public List<String> getLines()
+	{
+		return this.lines;
+	}
+	
+	public int getScannedBlocks()
+	{
+		return this.scannedBlocks;
+	}
+	
+	public int getTotalBlocks()
+	{
+		return this.totalBlocks;
+	}
+	
+	public boolean isTruncated()
+	{
+		return this.truncated;
+	}
+}
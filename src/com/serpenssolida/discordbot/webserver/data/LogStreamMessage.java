@@ -0,0 +1,32 @@
+package com.serpenssolida.discordbot.webserver.data;
+
+import java.util.List;
+
+public final class LogStreamMessage
+{
+	private final List<String> lines;
+	private final int skippedLines;
+	private final boolean reset;
+	
+	public LogStreamMessage(List<String> lines, int skippedLines, boolean reset)
+	{
+		this.lines = lines;
+		this.skippedLines = skippedLines;
+		this.reset = reset;
+	}
+	
+	public List<String> getLines()
+	{
+		return this.lines;
+	}
+	
+	public int getSkippedLines()
+	{
+		return this.skippedLines;
+	}
+	
+	public boolean isReset()
+	{
+		return this.reset;
+	}
+}
@@ -0,0 +1,46 @@
+package com.serpenssolida.discordbot.webserver.data;
+
+import net.dv8tion.jda.api.JDA;
+
+public class ShardStatusResponseBody
+{
+	private final int shardId;
+	private final JDA.Status status;
+	private final int guilds;
+	private final long gatewayPing;
+	private final long cachedMembers;
+	
+	public ShardStatusResponseBody(int shardId, JDA.Status status, int guilds, long gatewayPing, long cachedMembers)
+	{
+		this.shardId = shardId;
+		this.status = status;
+		this.guilds = guilds;
+		this.gatewayPing = gatewayPing;
+		this.cachedMembers = cachedMembers;
+	}
+	
+	public int getShardId()
+	{
+		return shardId;
+	}
+	
+	public JDA.Status getStatus()
+	{
+		return status;
+	}
+	
+	public int getGuilds()
+	{
+		return guilds;
+	}
+	
+	public long getGatewayPing()
+	{
+		return gatewayPing;
+	}
+	
+	public long getCachedMembers()
+	{
+		return cachedMembers;
+	}
+}